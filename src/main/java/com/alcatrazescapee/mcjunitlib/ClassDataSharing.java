@@ -0,0 +1,203 @@
+/*
+ * Part of MCJUnitLib by AlcatrazEscapee
+ * Work under Copyright. See the project LICENSE.md for details.
+ */
+
+package com.alcatrazescapee.mcjunitlib;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.OptionalInt;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Support for an application class data sharing (AppCDS) archive of the classes loaded by the test server, so later runs can skip loading and verifying them.
+ * The mode is chosen with the {@code mcjunitlib.cds} system property:
+ * <ul>
+ *     <li>{@code dump}: The test server is run in a new JVM which records the classes it loads, and an archive is created from them.</li>
+ *     <li>{@code auto}: If an archive exists, and was created for the current JVM and classpath, the test server is run in a new JVM using it. Otherwise, the test server runs as normal.</li>
+ * </ul>
+ * This relaunches the JVM, as an archive can only be used or created by options given when the JVM starts.
+ * Only classes loaded by the application class loader can be archived: Minecraft and mod classes, which are transformed, are not.
+ */
+final class ClassDataSharing
+{
+    private static final Level UNIT_TEST = Level.forName("UNITTEST", 50);
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final String MODE_PROPERTY = "mcjunitlib.cds";
+    private static final String RELAUNCHED_PROPERTY = "mcjunitlib.cds.relaunched"; // Set in the relaunched JVM, so it does not relaunch again
+
+    private static final Path DIRECTORY = Paths.get("mcjunitlib", "cds");
+    private static final Path ARCHIVE = DIRECTORY.resolve("test-server.jsa");
+    private static final Path CLASS_LIST = DIRECTORY.resolve("test-server.classlist");
+    private static final Path KEY = DIRECTORY.resolve("test-server.key"); // Identifies the JVM and classpath the archive was created for
+
+    /**
+     * Runs the test server in a new JVM, if required by the current mode, and waits for it to exit.
+     *
+     * @return The exit code of the new JVM, or empty if the test server should instead be run in this JVM.
+     */
+    static OptionalInt relaunch(String[] args)
+    {
+        final String mode = System.getProperty(MODE_PROPERTY, "").toLowerCase(Locale.ROOT);
+        if (mode.isEmpty() || Boolean.getBoolean(RELAUNCHED_PROPERTY))
+        {
+            return OptionalInt.empty();
+        }
+
+        final List<String> inputArguments = ManagementFactory.getRuntimeMXBean().getInputArguments();
+        if (inputArguments.stream().anyMatch(arg -> arg.startsWith("-agentlib:jdwp") || arg.startsWith("-Xrunjdwp")))
+        {
+            LOGGER.debug("Not using class data sharing, as a debugger is attached");
+            return OptionalInt.empty();
+        }
+
+        final int javaVersion = getJavaVersion();
+        if (javaVersion < 11)
+        {
+            LOGGER.log(UNIT_TEST, "Class data sharing for the test server requires Java 11 or newer, running without it.");
+            return OptionalInt.empty();
+        }
+
+        try
+        {
+            final String key = getKey();
+            if ("dump".equals(mode))
+            {
+                Files.createDirectories(DIRECTORY);
+                Files.deleteIfExists(KEY);
+                Files.deleteIfExists(ARCHIVE);
+                final int exitCode;
+                if (javaVersion >= 13)
+                {
+                    // Dynamic archives are created when the JVM exits, from the classes it loaded
+                    exitCode = run(Collections.singletonList("-XX:ArchiveClassesAtExit=" + ARCHIVE), args);
+                }
+                else
+                {
+                    exitCode = run(Collections.singletonList("-XX:DumpLoadedClassList=" + CLASS_LIST), args);
+                    dumpArchive();
+                }
+                if (Files.exists(ARCHIVE))
+                {
+                    Files.write(KEY, Collections.singletonList(key), StandardCharsets.UTF_8);
+                    LOGGER.log(UNIT_TEST, "Created class data sharing archive {}", ARCHIVE);
+                }
+                else
+                {
+                    LOGGER.log(UNIT_TEST, "Failed to create a class data sharing archive.");
+                }
+                return OptionalInt.of(exitCode);
+            }
+            else if ("auto".equals(mode))
+            {
+                if (Files.exists(ARCHIVE) && Files.exists(KEY) && key.equals(String.join("", Files.readAllLines(KEY, StandardCharsets.UTF_8))))
+                {
+                    LOGGER.debug("Using class data sharing archive {}", ARCHIVE);
+                    return OptionalInt.of(run(Collections.singletonList("-XX:SharedArchiveFile=" + ARCHIVE), args));
+                }
+                LOGGER.debug("Not using class data sharing, as the archive is missing or was created for a different JVM or classpath");
+                return OptionalInt.empty();
+            }
+            LOGGER.log(UNIT_TEST, "Unknown class data sharing mode '{}', expected 'dump' or 'auto'.", mode);
+        }
+        catch (IOException | InterruptedException | NoSuchAlgorithmException e)
+        {
+            LOGGER.debug("Unable to use class data sharing", e);
+        }
+        return OptionalInt.empty();
+    }
+
+    /**
+     * Runs the test server launcher in a new JVM, with the same arguments, system properties and classpath as this one.
+     */
+    private static int run(List<String> sharingOptions, String[] args) throws IOException, InterruptedException
+    {
+        final List<String> command = new ArrayList<>();
+        command.add(getJavaExecutable());
+        command.add("-Xshare:auto"); // If the archive cannot be used, the JVM runs without it
+        command.addAll(sharingOptions);
+        command.add("-D" + RELAUNCHED_PROPERTY + "=true");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add(DedicatedTestServerLauncher.class.getName());
+        Collections.addAll(command, args);
+
+        final ProcessBuilder builder = new ProcessBuilder(command).inheritIO();
+        builder.environment().put("CLASSPATH", System.getProperty("java.class.path")); // Passed by environment, as the classpath may be too long for a command line
+        return builder.start().waitFor();
+    }
+
+    /**
+     * Creates a static archive from the recorded class list.
+     */
+    private static void dumpArchive() throws IOException, InterruptedException
+    {
+        if (Files.exists(CLASS_LIST))
+        {
+            final ProcessBuilder builder = new ProcessBuilder(getJavaExecutable(), "-Xshare:dump", "-XX:SharedClassListFile=" + CLASS_LIST, "-XX:SharedArchiveFile=" + ARCHIVE).inheritIO();
+            builder.environment().put("CLASSPATH", System.getProperty("java.class.path"));
+            builder.start().waitFor();
+        }
+    }
+
+    /**
+     * The key identifies the JVM, and the path, size and modification time of each classpath entry. An archive is only valid for the same JVM and classpath.
+     */
+    private static String getKey() throws IOException, NoSuchAlgorithmException
+    {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        digest.update((System.getProperty("java.vm.version") + ";" + System.getProperty("java.home") + ";").getBytes(StandardCharsets.UTF_8));
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator))
+        {
+            final Path path = Paths.get(entry);
+            digest.update(entry.getBytes(StandardCharsets.UTF_8));
+            if (Files.isRegularFile(path))
+            {
+                digest.update((":" + Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis()).getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) ';');
+        }
+
+        final StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    private static String getJavaExecutable()
+    {
+        return Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    private static int getJavaVersion()
+    {
+        final String version = System.getProperty("java.specification.version");
+        try
+        {
+            return version.startsWith("1.") ? Integer.parseInt(version.substring(2)) : Integer.parseInt(version);
+        }
+        catch (NumberFormatException e)
+        {
+            return 8;
+        }
+    }
+
+    private ClassDataSharing() {}
+}
@@ -6,7 +6,9 @@
 package com.alcatrazescapee.mcjunitlib;
 
 import java.io.File;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.concurrent.Callable;
@@ -18,6 +20,7 @@ import org.apache.logging.log4j.Logger;
 import net.minecraft.crash.CrashReport;
 import net.minecraft.crash.ReportedException;
 import net.minecraft.network.ServerStatusResponse;
+import net.minecraft.profiler.IProfileResult;
 import net.minecraft.profiler.IProfiler;
 import net.minecraft.profiler.LongTickDetector;
 import net.minecraft.profiler.TimeTracker;
@@ -28,17 +31,22 @@ import net.minecraft.server.ServerPropertiesProvider;
 import net.minecraft.server.dedicated.DedicatedServer;
 import net.minecraft.server.management.PlayerProfileCache;
 import net.minecraft.util.SharedConstants;
+import net.minecraft.util.Unit;
 import net.minecraft.util.Util;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.registry.DynamicRegistries;
 import net.minecraft.util.text.StringTextComponent;
+import net.minecraft.world.chunk.listener.IChunkStatusListener;
 import net.minecraft.world.chunk.listener.IChunkStatusListenerFactory;
 import net.minecraft.world.server.ServerWorld;
+import net.minecraft.world.server.TicketType;
 import net.minecraft.world.storage.IServerConfiguration;
 import net.minecraft.world.storage.SaveFormat;
 import net.minecraftforge.fml.common.ObfuscationReflectionHelper;
 import net.minecraftforge.fml.server.ServerLifecycleHooks;
 
 import com.alcatrazescapee.mcjunitlib.framework.IntegrationTestManager;
+import com.alcatrazescapee.mcjunitlib.framework.TestFiles;
 import com.mojang.authlib.GameProfileRepository;
 import com.mojang.authlib.minecraft.MinecraftSessionService;
 import com.mojang.datafixers.DataFixer;
@@ -52,6 +60,12 @@ public class DedicatedTestServer extends DedicatedServer
     private static final Field PROFILER_FIELD = ObfuscationReflectionHelper.findField(MinecraftServer.class, "field_71304_b"); // profiler
     private static final Field CONTINUOUS_PROFILER_FIELD = ObfuscationReflectionHelper.findField(MinecraftServer.class, "field_240769_m_"); // continuousProfiler
 
+    // Reflection to create levels without preparing the spawn chunks
+    private static final Method CREATE_LEVELS_METHOD = ObfuscationReflectionHelper.findMethod(MinecraftServer.class, "func_240787_a_", IChunkStatusListener.class); // createLevels
+
+    private static final String PROFILE_RESULTS_FILE = "profile-results.txt";
+    private static final int SPAWN_CHUNK_RADIUS = 11; // The radius of the ticket added by MinecraftServer#prepareLevels
+
     private static <T> T uncheck(Callable<T> action)
     {
         try
@@ -65,10 +79,22 @@ public class DedicatedTestServer extends DedicatedServer
     }
 
     private final boolean crashOnFailedTests;
+    private final boolean failFast;
+    private final boolean rerunFailed;
+    private final long timeLimit;
+    private final long maxTickTime;
+    private final boolean profileIntegrationTests;
+    private final JUnitTestRunner unitTestRunner;
+    private final StartupTimer startupTimer;
+    private final boolean unloadSpawnChunks;
+    private final boolean skipSpawnPreparation;
+    private final IChunkStatusListenerFactory chunkStatusListenerFactory;
 
     private int delayTicks;
-    private boolean allTestsFinished;
-    private boolean crashed;
+    private long deadline;
+    private volatile long tickStartTime;
+    private volatile boolean allTestsFinished;
+    private volatile boolean crashed;
 
     // Shadow from DedicatedServer
     private long lastOverloadWarning;
@@ -77,12 +103,22 @@ public class DedicatedTestServer extends DedicatedServer
     private boolean delayProfilerStart;
     private volatile boolean isReady;
 
-    public DedicatedTestServer(Thread thread, DynamicRegistries.Impl dynamicRegistries, SaveFormat.LevelSave saveFormat, ResourcePackList resourcePacks, DataPackRegistries dataPacks, IServerConfiguration serverConfiguration, ServerPropertiesProvider serverProperties, DataFixer dataFixer, MinecraftSessionService service, GameProfileRepository profileRepository, PlayerProfileCache profileCache, IChunkStatusListenerFactory chunkStatusListenerFactory, boolean crashOnFailedTests)
+    public DedicatedTestServer(Thread thread, DynamicRegistries.Impl dynamicRegistries, SaveFormat.LevelSave saveFormat, ResourcePackList resourcePacks, DataPackRegistries dataPacks, IServerConfiguration serverConfiguration, ServerPropertiesProvider serverProperties, DataFixer dataFixer, MinecraftSessionService service, GameProfileRepository profileRepository, PlayerProfileCache profileCache, IChunkStatusListenerFactory chunkStatusListenerFactory, boolean crashOnFailedTests, boolean failFast, boolean rerunFailed, long timeLimit, long maxTickTime, boolean profileIntegrationTests, JUnitTestRunner unitTestRunner, StartupTimer startupTimer, boolean unloadSpawnChunks, boolean skipSpawnPreparation)
     {
         super(thread, dynamicRegistries, saveFormat, resourcePacks, dataPacks, serverConfiguration, serverProperties, dataFixer, service, profileRepository, profileCache, chunkStatusListenerFactory);
 
         this.allTestsFinished = false;
         this.crashOnFailedTests = crashOnFailedTests;
+        this.failFast = failFast;
+        this.rerunFailed = rerunFailed;
+        this.timeLimit = timeLimit;
+        this.maxTickTime = maxTickTime;
+        this.profileIntegrationTests = profileIntegrationTests;
+        this.unitTestRunner = unitTestRunner;
+        this.startupTimer = startupTimer;
+        this.unloadSpawnChunks = unloadSpawnChunks;
+        this.skipSpawnPreparation = skipSpawnPreparation;
+        this.chunkStatusListenerFactory = chunkStatusListenerFactory;
         this.delayTicks = 0;
     }
 
@@ -91,35 +127,94 @@ public class DedicatedTestServer extends DedicatedServer
         return crashed;
     }
 
+    /**
+     * Exit with a failure code, as if the server had crashed, but without producing a crash report.
+     */
+    void markCrashed()
+    {
+        crashed = true;
+    }
+
+    boolean allTestsFinished()
+    {
+        return allTestsFinished;
+    }
+
+    /**
+     * @return The time (in ms) the current tick was started, or zero if the server is not currently ticking.
+     */
+    long getTickStartTime()
+    {
+        return tickStartTime;
+    }
+
     @Override
     protected void runServer()
     {
         LOGGER.log(UNIT_TEST, "Server Thread Starting");
         crashed = false;
+
+        // The time limit is measured from JVM start, so it includes all startup time
+        deadline = timeLimit > 0 ? ManagementFactory.getRuntimeMXBean().getStartTime() + timeLimit : Long.MAX_VALUE;
+        if (timeLimit > 0 || maxTickTime > 0)
+        {
+            final Thread watchdog = new Thread(new TestServerWatchdog(this, deadline, maxTickTime, startupTimer), "Test Server Watchdog");
+            watchdog.setDaemon(true);
+            watchdog.start();
+        }
+
         try
         {
-            if (initServer())
+            startupTimer.begin("initServer");
+            final boolean initialized = initServer();
+            startupTimer.end();
+            if (initialized)
             {
                 // Additional initServer() extras
                 // This is the equivalent of online-mode=false, which allows in-dev clients to connect
                 setUsesAuthentication(false);
                 PlayerProfileCache.setUsesAuthentication(false);
 
+                if (unloadSpawnChunks && !skipSpawnPreparation)
+                {
+                    // Release the ticket which keeps the spawn chunks loaded and ticking. Chunks with test plots are kept loaded by the integration test manager
+                    final ServerWorld overworld = overworld();
+                    overworld.getChunkSource().removeRegionTicket(TicketType.START, new ChunkPos(overworld.getSharedSpawnPos()), SPAWN_CHUNK_RADIUS, Unit.INSTANCE);
+                }
+
                 ServerLifecycleHooks.handleServerStarted(this);
 
                 // Before ticking actions
                 // 1. Run all JUnit unit tests
                 // 2. Setup all integration tests (running the /integrationTest setup command)
 
-                final JUnitTestRunner unitTestRunner = new JUnitTestRunner();
+                startupTimer.begin("unitTests");
                 unitTestRunner.runAllTests();
+                startupTimer.end();
 
                 final ServerWorld overworld = overworld();
                 final BiConsumer<String, Boolean> logger = (message, success) -> LOGGER.info((success ? "" : "ERROR : ") + message);
+                startupTimer.begin("verifyIntegrationTests");
                 final boolean testsVerified = IntegrationTestManager.INSTANCE.verifyAllTests(overworld, logger);
+                startupTimer.end();
                 if (!testsVerified)
                 {
                     LOGGER.log(UNIT_TEST, "Unable to verify all tests.");
+                    startupTimer.finish();
+                }
+                else
+                {
+                    startupTimer.begin("ticksBeforeSetup");
+                }
+
+                if (failFast && (unitTestRunner.hasFailedTests() || !testsVerified))
+                {
+                    // Don't bother setting up integration tests, and exit with a failure as if we had crashed
+                    LOGGER.log(UNIT_TEST, "Some tests have failed! Skipping integration tests (fail fast).");
+                    startupTimer.finish();
+                    allTestsFinished = true;
+                    crashed = true;
+                    halt(false);
                 }
 
                 // Ticking actions
@@ -127,7 +222,6 @@ public class DedicatedTestServer extends DedicatedServer
                 nextTickTime = Util.getMillis();
 
                 final ServerStatusResponse status = getStatus();
-                final IProfiler profiler = getProfiler();
 
                 status.setDescription(new StringTextComponent("Test Server"));
                 status.setVersion(new ServerStatusResponse.Version(SharedConstants.getCurrentVersion().getName(), SharedConstants.getCurrentVersion().getProtocolVersion()));
@@ -145,26 +239,62 @@ public class DedicatedTestServer extends DedicatedServer
 
                     nextTickTime += 50L;
                     startProfilerTick();
+                    final IProfiler profiler = getProfiler(); // Replaced each tick, by the continuous profiler if it is enabled
                     profiler.startTick();
                     profiler.push("tick");
+                    tickStartTime = System.currentTimeMillis();
                     tickServer(this::haveTimeShadow);
 
-                    if (testsVerified)
+                    if (!allTestsFinished && System.currentTimeMillis() > deadline)
                     {
+                        // Out of time, fail any remaining tests, and exit
+                        LOGGER.log(UNIT_TEST, "Test run exceeded the time limit of {} s!", timeLimit / 1000);
+                        IntegrationTestManager.INSTANCE.failAllTests(overworld, "Test run exceeded the time limit of " + timeLimit / 1000 + " s", rerunFailed);
+                        startupTimer.finish(); // If the time limit was reached during startup, the phases so far are still reported
+                        finishProfiling();
+                        allTestsFinished = true;
+                        crashed = true;
+                        halt(false);
+                    }
+                    else if (testsVerified && !allTestsFinished)
+                    {
+                        if (startupTimer.isInPhase("integrationTestSetup") && IntegrationTestManager.INSTANCE.isSetupFinished())
+                        {
+                            // Setup may take several ticks, if it is limited by a setup budget
+                            startupTimer.finish();
+                        }
                         delayTicks++;
                         if (delayTicks == 20)
                         {
+                            startupTimer.end();
+                            startupTimer.begin("integrationTestSetup");
                             LOGGER.log(UNIT_TEST, "Running test setup...");
-                            IntegrationTestManager.INSTANCE.setupAllTests(overworld, logger);
+                            if (rerunFailed)
+                            {
+                                IntegrationTestManager.INSTANCE.setupFailedTests(overworld, logger);
+                            }
+                            else
+                            {
+                                IntegrationTestManager.INSTANCE.setupAllTests(overworld, logger);
+                            }
+                            if (IntegrationTestManager.INSTANCE.isSetupFinished())
+                            {
+                                startupTimer.finish();
+                            }
                         }
                         else if (delayTicks == 40)
                         {
                             LOGGER.log(UNIT_TEST, "Running tests...");
+                            if (profileIntegrationTests)
+                            {
+                                delayProfilerStart = true; // Enabled from the start of the next tick, as with /debug start
+                            }
                             IntegrationTestManager.INSTANCE.runAllTests(overworld, logger);
                         }
                         else if (delayTicks > 40 && !allTestsFinished && IntegrationTestManager.INSTANCE.isComplete())
                         {
                             // Check test completions, and if so, stop server
+                            finishProfiling();
                             allTestsFinished = true;
                             LOGGER.log(UNIT_TEST, "All tests finished.");
                             boolean failures = unitTestRunner.hasFailedTests() || IntegrationTestManager.INSTANCE.hasFailedTests();
@@ -172,6 +302,11 @@ public class DedicatedTestServer extends DedicatedServer
                             {
                                 halt(false); // All tests passed, exit gracefully
                             }
+                            else if (failFast)
+                            {
+                                crashed = true; // Exit with a failure code, without producing a crash report
+                                halt(false);
+                            }
                             else if (crashOnFailedTests)
                             {
                                 throw new ReportedException(new CrashReport("Some tests have failed!", new Exception())); // Some tests failed, and we've specified to hard crash
@@ -180,6 +315,7 @@ public class DedicatedTestServer extends DedicatedServer
                         }
                     }
 
+                    tickStartTime = 0;
                     profiler.popPush("nextTickWait");
                     mayHaveDelayedTasks = true;
                     delayedTasksMaxNextTickTime = Math.max(Util.getMillis() + 50L, this.nextTickTime);
@@ -222,6 +358,7 @@ public class DedicatedTestServer extends DedicatedServer
         }
         finally
         {
+            startupTimer.finish(); // Only has an effect if the server stopped, or crashed, before startup was finished
             try
             {
                 ObfuscationReflectionHelper.setPrivateValue(MinecraftServer.class, this, true, "field_71316_v"); // stopped
@@ -245,6 +382,27 @@ public class DedicatedTestServer extends DedicatedServer
         }
     }
 
+    /**
+     * Override to skip preparing the spawn chunks, if enabled. Chunks containing integration tests are loaded as each test is set up instead.
+     * The rest is the same as {@link MinecraftServer#loadLevel()}, except for detecting a world resource pack, which a new test world never has, and restoring forced chunks, which a new test world also never has.
+     */
+    @Override
+    protected void loadLevel()
+    {
+        if (!skipSpawnPreparation)
+        {
+            super.loadLevel();
+            return;
+        }
+
+        worldData.setModdedInfo(getServerModName(), getModdedStatus().isPresent());
+        final IChunkStatusListener chunkStatusListener = chunkStatusListenerFactory.create(SPAWN_CHUNK_RADIUS);
+        uncheck(() -> CREATE_LEVELS_METHOD.invoke(this, chunkStatusListener));
+        forceDifficulty();
+        LOGGER.log(UNIT_TEST, "Skipping spawn chunk preparation");
+        updateMobSpawningFlags();
+    }
+
     @Override
     public long getMaxTickLength()
     {
@@ -307,6 +465,23 @@ public class DedicatedTestServer extends DedicatedServer
         });
     }
 
+    /**
+     * If integration tests are being profiled, stops the profiler and writes the results.
+     */
+    private void finishProfiling()
+    {
+        final TimeTracker continuousProfiler = uncheck(() -> (TimeTracker) CONTINUOUS_PROFILER_FIELD.get(this));
+        if (profileIntegrationTests && continuousProfiler.isEnabled())
+        {
+            final IProfileResult results = continuousProfiler.getFiller().getResults();
+            continuousProfiler.disable();
+            if (results.saveResults(TestFiles.resolve(PROFILE_RESULTS_FILE).toFile()))
+            {
+                LOGGER.log(UNIT_TEST, "Profiled {} ticks of integration tests, results written to {}", results.getTickDuration(), TestFiles.resolve(PROFILE_RESULTS_FILE));
+            }
+        }
+    }
+
     /**
      * Use shadowed fields, and the superclass method is private
      */
@@ -9,6 +9,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.Locale;
+import java.util.OptionalInt;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -27,6 +28,13 @@ public class DedicatedTestServerLauncher
         Arrays.stream(markerSelection.split(",")).forEach(marker -> System.setProperty("forge.logging.marker."+ marker.toLowerCase(Locale.ROOT), "ACCEPT"));
 
         LOGGER.log(UNIT_TEST, "TestServerLauncher Starting");
+        final OptionalInt exitCode = ClassDataSharing.relaunch(args);
+        if (exitCode.isPresent())
+        {
+            // The test server was run in a new JVM, using or creating a class data sharing archive
+            System.exit(exitCode.getAsInt());
+        }
+
         String[] arguments;
         try
         {
@@ -6,19 +6,28 @@
 package com.alcatrazescapee.mcjunitlib;
 
 import java.io.File;
+import java.io.IOException;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.Optional;
-import java.util.Set;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import org.junit.platform.engine.TestExecutionResult;
 import org.junit.platform.engine.TestSource;
 import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.engine.discovery.PackageNameFilter;
 import org.junit.platform.engine.support.descriptor.ClassSource;
 import org.junit.platform.engine.support.descriptor.MethodSource;
 import org.junit.platform.engine.support.descriptor.PackageSource;
@@ -28,15 +37,36 @@ import org.junit.platform.launcher.core.LauncherFactory;
 import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
 import org.junit.platform.launcher.listeners.TestExecutionSummary;
 
+import com.alcatrazescapee.mcjunitlib.framework.TestEvents;
+import com.alcatrazescapee.mcjunitlib.framework.TestFiles;
+
 public class JUnitTestRunner implements TestExecutionListener
 {
     private static final Level UNIT_TEST = Level.forName("UNITTEST", 50);
     private static final Logger LOGGER = LogManager.getLogger("UnitTests");
     private static final String HR = "--------------------------------------------------";
+    private static final String TEST_CLASSES_FILE = "unit-test-classes.txt";
+
+    private final List<String> packages;
+    private final List<String> tags;
+    private final boolean cacheTestClasses;
+    private final Map<TestIdentifier, TestEvents.Span> testEvents = new HashMap<>(); // Events for tests which are currently executing
 
     private int testCounter;
     private boolean failedTests;
 
+    /**
+     * @param packages         If not empty, only tests in these packages (or their sub packages) are discovered
+     * @param tags             If not empty, only tests with one of these tags (or tag expressions) are discovered
+     * @param cacheTestClasses If the test classes found by scanning the classpath are cached, and used to select classes directly when no class files have changed
+     */
+    public JUnitTestRunner(List<String> packages, List<String> tags, boolean cacheTestClasses)
+    {
+        this.packages = packages;
+        this.tags = tags;
+        this.cacheTestClasses = cacheTestClasses;
+    }
+
     public void runAllTests()
     {
         testCounter = 1;
@@ -66,13 +96,43 @@ public class JUnitTestRunner implements TestExecutionListener
         if(!moduleNames.isEmpty())
             LOGGER.debug("Found supplied module names [{}]", moduleNames);
 
-        LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
-            .selectors(DiscoverySelectors.selectClasspathRoots(modClassPaths))
-            .selectors(DiscoverySelectors.selectModules(moduleNames))
-            .build();
+        final long discoveryStart = System.nanoTime();
+        final String cacheKey = cacheTestClasses ? getCacheKey(modClassPaths) : null;
+        final List<String> cachedTestClasses = cacheKey != null ? readTestClasses(cacheKey) : null;
+
+        final LauncherDiscoveryRequestBuilder builder = LauncherDiscoveryRequestBuilder.request();
+        if (cachedTestClasses != null)
+        {
+            // No class files have changed, so select the classes which contained tests directly, rather than scanning the classpath
+            LOGGER.debug("Selecting {} cached test classes", cachedTestClasses.size());
+            builder.selectors(cachedTestClasses.stream().map(DiscoverySelectors::selectClass).collect(Collectors.toList()));
+        }
+        else
+        {
+            builder.selectors(DiscoverySelectors.selectClasspathRoots(modClassPaths));
+        }
+        builder.selectors(DiscoverySelectors.selectModules(moduleNames));
+        if (!packages.isEmpty())
+        {
+            builder.filters(PackageNameFilter.includePackageNames(packages));
+        }
+        if (!tags.isEmpty())
+        {
+            builder.filters(TagFilter.includeTags(tags));
+        }
+        LauncherDiscoveryRequest request = builder.build();
+
+        final ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+        final long loadedClassesBefore = classLoading.getTotalLoadedClassCount();
 
         Launcher launcher = LauncherFactory.create();
         TestPlan testPlan = launcher.discover(request);
+        LOGGER.debug("Discovered unit tests in {} ms, loading {} classes (JUnit loaded by {})", (System.nanoTime() - discoveryStart) / 1_000_000, classLoading.getTotalLoadedClassCount() - loadedClassesBefore, Launcher.class.getClassLoader());
+
+        if (cacheKey != null && cachedTestClasses == null)
+        {
+            writeTestClasses(cacheKey, testPlan);
+        }
 
         if (testPlan.containsTests())
         {
@@ -150,6 +210,18 @@ public class JUnitTestRunner implements TestExecutionListener
         {
             LOGGER.log(UNIT_TEST, "{}. Running {}", testCounter, getDisplayName(testIdentifier));
             testCounter++;
+            testEvents.put(testIdentifier, TestEvents.unitTest(getDisplayName(testIdentifier)));
+        }
+    }
+
+    @Override
+    public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult testExecutionResult)
+    {
+        final TestEvents.Span event = testEvents.remove(testIdentifier);
+        if (event != null)
+        {
+            event.setResult(testExecutionResult.getStatus().name().toLowerCase(Locale.ROOT));
+            event.commit();
         }
     }
 
@@ -158,6 +230,86 @@ public class JUnitTestRunner implements TestExecutionListener
         return failedTests;
     }
 
+    /**
+     * The key identifies the class files which would be scanned, by their path, size and last modified time, along with the packages and tags which are discovered.
+     * Class files are not read, so computing the key is much faster than scanning them.
+     *
+     * @return The key, or null if the class files could not be listed
+     */
+    @Nullable
+    private String getCacheKey(Set<Path> classPaths)
+    {
+        try
+        {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(("packages=" + packages + ";tags=" + tags + ";").getBytes(StandardCharsets.UTF_8));
+            for (Path root : classPaths.stream().sorted().collect(Collectors.toList()))
+            {
+                if (Files.isDirectory(root))
+                {
+                    final List<Path> classFiles;
+                    try (Stream<Path> stream = Files.walk(root))
+                    {
+                        classFiles = stream.filter(path -> path.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+                    }
+                    for (Path classFile : classFiles)
+                    {
+                        digest.update((root.relativize(classFile) + ":" + Files.size(classFile) + ":" + Files.getLastModifiedTime(classFile).toMillis() + ";").getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+                else if (Files.exists(root))
+                {
+                    digest.update((root + ":" + Files.size(root) + ":" + Files.getLastModifiedTime(root).toMillis() + ";").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            final StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest())
+            {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        }
+        catch (IOException | NoSuchAlgorithmException e)
+        {
+            LOGGER.debug("Unable to list class files, unit test classes will not be cached", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return The cached test classes, or null if there were none, or they were cached for different class files.
+     */
+    @Nullable
+    private List<String> readTestClasses(String cacheKey)
+    {
+        final List<String> lines = TestFiles.readLines(TEST_CLASSES_FILE);
+        if (!lines.isEmpty() && lines.get(0).equals(cacheKey))
+        {
+            return lines.subList(1, lines.size());
+        }
+        return null;
+    }
+
+    private void writeTestClasses(String cacheKey, TestPlan testPlan)
+    {
+        final Set<String> testClasses = new TreeSet<>();
+        for (TestIdentifier root : testPlan.getRoots())
+        {
+            for (TestIdentifier descendant : testPlan.getDescendants(root))
+            {
+                descendant.getSource()
+                    .filter(source -> source instanceof ClassSource)
+                    .ifPresent(source -> testClasses.add(((ClassSource) source).getClassName()));
+            }
+        }
+
+        final List<String> lines = new ArrayList<>(testClasses.size() + 1);
+        lines.add(cacheKey);
+        lines.addAll(testClasses);
+        TestFiles.writeLines(TEST_CLASSES_FILE, lines);
+    }
+
     private String getDisplayName(TestIdentifier testIdentifier)
     {
         TestSource source = testIdentifier.getSource().orElse(null);
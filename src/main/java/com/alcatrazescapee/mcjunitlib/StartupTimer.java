@@ -0,0 +1,138 @@
+/*
+ * Part of MCJUnitLib by AlcatrazEscapee
+ * Work under Copyright. See the project LICENSE.md for details.
+ */
+
+package com.alcatrazescapee.mcjunitlib;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.alcatrazescapee.mcjunitlib.framework.TestEvents;
+import com.alcatrazescapee.mcjunitlib.framework.TestFiles;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Times each phase of starting the test server, from the JVM starting until the integration tests are set up.
+ * Phases may be nested, for phases which are part of a larger phase. Once startup is finished, a summary is logged, and written to a file.
+ *
+ * Phases are started on the main thread, and then on the server thread once it has started, so this is synchronized.
+ */
+final class StartupTimer
+{
+    private static final Level UNIT_TEST = Level.forName("UNITTEST", 50);
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final String STARTUP_FILE = "startup.json";
+
+    private final long jvmStartTime; // In ms
+    private final List<Phase> phases;
+    private final Deque<Phase> openPhases;
+    private boolean finished;
+
+    StartupTimer()
+    {
+        this.jvmStartTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+        this.phases = new ArrayList<>();
+        this.openPhases = new ArrayDeque<>();
+        this.finished = false;
+
+        // Everything before this, in the launcher and mod launcher
+        final Phase launch = new Phase("launch", 0, TestEvents.Span.NONE);
+        launch.millis = System.currentTimeMillis() - jvmStartTime;
+        phases.add(launch);
+    }
+
+    /**
+     * Starts a phase, nested inside the current phase, if there is one.
+     */
+    synchronized void begin(String name)
+    {
+        final Phase phase = new Phase(name, openPhases.size(), TestEvents.startupPhase(name));
+        phases.add(phase);
+        openPhases.push(phase);
+    }
+
+    /**
+     * Ends the most recently started phase.
+     */
+    synchronized void end()
+    {
+        final Phase phase = openPhases.poll();
+        if (phase != null)
+        {
+            phase.millis = System.currentTimeMillis() - phase.startTime;
+            phase.event.commit();
+        }
+    }
+
+    synchronized boolean isInPhase(String name)
+    {
+        final Phase phase = openPhases.peek();
+        return phase != null && phase.name.equals(name);
+    }
+
+    /**
+     * Ends any phases which are still open, logs a summary, and writes it to a file. This only has an effect the first time it is called.
+     */
+    synchronized void finish()
+    {
+        if (finished)
+        {
+            return;
+        }
+        finished = true;
+        while (!openPhases.isEmpty())
+        {
+            end();
+        }
+
+        final long total = System.currentTimeMillis() - jvmStartTime;
+        final JsonArray phasesJson = new JsonArray();
+        LOGGER.log(UNIT_TEST, "Startup took {} ms:", total);
+        for (Phase phase : phases)
+        {
+            final StringBuilder indent = new StringBuilder();
+            for (int i = 0; i < phase.depth; i++)
+            {
+                indent.append("  ");
+            }
+            LOGGER.log(UNIT_TEST, String.format(" - %-32s %8d ms (%4.1f %%)", indent + phase.name, phase.millis, 100f * phase.millis / total));
+
+            final JsonObject phaseJson = new JsonObject();
+            phaseJson.addProperty("name", phase.name);
+            phaseJson.addProperty("depth", phase.depth);
+            phaseJson.addProperty("millis", phase.millis);
+            phasesJson.add(phaseJson);
+        }
+
+        final JsonObject startupJson = new JsonObject();
+        startupJson.addProperty("millis", total);
+        startupJson.add("phases", phasesJson);
+        TestFiles.writeJson(STARTUP_FILE, startupJson);
+    }
+
+    private static final class Phase
+    {
+        private final String name;
+        private final int depth;
+        private final long startTime;
+        private final TestEvents.Span event;
+        private long millis;
+
+        private Phase(String name, int depth, TestEvents.Span event)
+        {
+            this.name = name;
+            this.depth = depth;
+            this.startTime = System.currentTimeMillis();
+            this.event = event;
+        }
+    }
+}
@@ -26,6 +26,7 @@ import net.minecraft.util.DefaultUncaughtExceptionHandler;
 import net.minecraft.util.Util;
 import net.minecraft.util.datafix.DataFixesManager;
 import net.minecraft.util.datafix.codec.DatapackCodec;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.registry.*;
 import net.minecraft.world.*;
 import net.minecraft.world.biome.Biome;
@@ -86,25 +87,78 @@ public class TestMain
 
         // Additional options, for testing purposes
         OptionSpec<Void> crashOnFailedTestsSpec = spec.accepts("crashOnFailedTests");
+        OptionSpec<Void> failFastSpec = spec.accepts("failFast", "Skips integration tests if any unit test fails, and stops running integration tests and exits after the first failed integration test");
+        OptionSpec<Void> rerunFailedSpec = spec.accepts("rerunFailed", "Only runs the integration tests which failed in the previous run");
+        OptionSpec<String> unitTestPackageSpec = spec.accepts("unitTestPackage", "Only runs unit tests in this package, and its sub packages. May be given more than once").withRequiredArg();
+        OptionSpec<String> unitTestTagSpec = spec.accepts("unitTestTag", "Only runs unit tests with this tag, or matching this tag expression. May be given more than once").withRequiredArg();
+        OptionSpec<Void> cacheUnitTestClassesSpec = spec.accepts("cacheUnitTestClasses", "Caches the classes which contain unit tests, and uses them instead of scanning the classpath when no class files have changed");
+        OptionSpec<Integer> repeatSpec = spec.accepts("repeat", "The number of copies of each integration test to run at once").withRequiredArg().ofType(Integer.class).defaultsTo(1);
+        OptionSpec<Integer> timeLimitSpec = spec.accepts("timeLimit", "The maximum time (in seconds) the whole test run may take, measured from when the JVM started, or 0 for no limit").withRequiredArg().ofType(Integer.class).defaultsTo(0);
+        OptionSpec<Integer> maxTickTimeSpec = spec.accepts("maxTickTime", "The maximum time (in seconds) a single server tick may take while tests are running, or 0 for no limit").withRequiredArg().ofType(Integer.class).defaultsTo(0);
+        OptionSpec<Void> adaptiveRefreshSpec = spec.accepts("adaptiveRefresh", "Checks integration test conditions frequently at first, then less often the longer a test waits");
+        OptionSpec<Void> quietWorldSpec = spec.accepts("quietWorld", "Disables world simulation not caused by integration tests, such as random ticks, fire spread, raids, and entities outside of test areas");
+        OptionSpec<Integer> traceBlockChangesSpec = spec.accepts("traceBlockChanges", "The number of recent block changes to record for each integration test, which are written to a file if it fails, or 0 to disable").withRequiredArg().ofType(Integer.class).defaultsTo(0);
+        OptionSpec<Void> countUpdatesSpec = spec.accepts("countUpdates", "Counts and logs the block updates, neighbor notifications, scheduled ticks and block entity ticks in each integration test's area");
+        OptionSpec<Void> voidWorldSpec = spec.accepts("voidWorld", "Generates the test world without any terrain, so only the floors of integration test areas are built");
+        OptionSpec<Void> unloadSpawnChunksSpec = spec.accepts("unloadSpawnChunks", "Stops keeping the spawn chunks loaded once the server has started, so only chunks containing integration tests are loaded and ticked");
+        OptionSpec<Void> skipSpawnPreparationSpec = spec.accepts("skipSpawnPreparation", "Does not generate or load the spawn chunks when the server starts, so only chunks containing integration tests are loaded and ticked");
+        OptionSpec<Integer> setupBudgetSpec = spec.accepts("setupBudget", "The maximum time (in milliseconds) spent setting up integration test areas in each tick, or 0 to set up all at once").withRequiredArg().ofType(Integer.class).defaultsTo(0);
+        OptionSpec<Void> profileIntegrationTestsSpec = spec.accepts("profileIntegrationTests", "Records the integration tests with the vanilla profiler, and writes the results once all tests are finished");
+        OptionSpec<String> shardSpec = spec.accepts("shard", "Only runs one of several shards of the integration tests, as 'index/count', where the index is from 1 to the count").withRequiredArg();
+        OptionSpec<String> shardDurationsSpec = spec.accepts("shardDurations", "A test durations file shared by all shards, which is used to balance shards by how long their tests take").withRequiredArg();
+        OptionSpec<Void> measureTickAllocationsSpec = spec.accepts("measureTickAllocations", "Measures and logs the bytes allocated by the server thread while ticking integration tests");
 
         try
         {
             OptionSet options = spec.parse(args);
+            final StartupTimer startupTimer = new StartupTimer();
 
+            startupTimer.begin("bootstrap");
             CrashReport.preload();
             Bootstrap.bootStrap();
             Bootstrap.validate();
             Util.startTimerHackThread();
+            startupTimer.end();
+
+            startupTimer.begin("loadMods");
             ServerModLoader.load();
+            startupTimer.end();
 
             // After mods have loaded, immediately setup for integration tests.
+            final boolean failFast = options.has(failFastSpec);
+            startupTimer.begin("findIntegrationTests");
             IntegrationTestManager.setup();
+            startupTimer.end();
+            IntegrationTestManager.INSTANCE.setFailFast(failFast);
+            IntegrationTestManager.INSTANCE.setRepeat(options.valueOf(repeatSpec));
+            IntegrationTestManager.INSTANCE.setAdaptiveRefresh(options.has(adaptiveRefreshSpec));
+            IntegrationTestManager.INSTANCE.setQuietWorld(options.has(quietWorldSpec));
+            IntegrationTestManager.INSTANCE.setVoidWorld(options.has(voidWorldSpec));
+            IntegrationTestManager.INSTANCE.setTraceBlockChanges(options.valueOf(traceBlockChangesSpec));
+            IntegrationTestManager.INSTANCE.setCountUpdates(options.has(countUpdatesSpec));
+            IntegrationTestManager.INSTANCE.setSetupBudget(options.valueOf(setupBudgetSpec));
+            if (options.has(shardSpec))
+            {
+                final String[] shard = options.valueOf(shardSpec).split("/");
+                if (shard.length != 2)
+                {
+                    throw new IllegalArgumentException("Invalid shard '" + options.valueOf(shardSpec) + "', expected 'index/count'");
+                }
+                IntegrationTestManager.INSTANCE.setShard(Integer.parseInt(shard[0]) - 1, Integer.parseInt(shard[1]));
+                if (options.has(shardDurationsSpec))
+                {
+                    IntegrationTestManager.INSTANCE.setShardDurations(options.valueOf(shardDurationsSpec));
+                }
+            }
+            IntegrationTestManager.INSTANCE.setMeasureTickAllocations(options.has(measureTickAllocationsSpec));
 
             DynamicRegistries.Impl builtinRegistries = DynamicRegistries.builtin();
 
             // Delete the old test world, we create a new one each run
             LOGGER.log(UNIT_TEST, "Removing previous test world...");
+            startupTimer.begin("deleteWorld");
             FileUtils.deleteDirectory(new File(TEST_WORLD));
+            startupTimer.end();
 
             // Edit the server.properties file before force saving it. This requires some minor reflection into the original properties object
             final Path path = Paths.get("server.properties");
@@ -142,6 +196,7 @@ public class TestMain
 
             ResourcePackList resourcePacks = new ResourcePackList(new ServerPackFinder(), new FolderPackFinder(levelSave.getLevelPath(FolderName.DATAPACK_DIR).toFile(), IPackNameDecorator.WORLD));
             DatapackCodec dataPacks = MinecraftServer.configurePackRepository(resourcePacks, levelDataPacks == null ? DatapackCodec.DEFAULT : levelDataPacks, false);
+            startupTimer.begin("loadDatapacks");
             CompletableFuture<DataPackRegistries> dataPackFuture = DataPackRegistries.loadResources(resourcePacks.openAllSelected(), Commands.EnvironmentType.DEDICATED, serverPropertiesProvider.getProperties().functionPermissionLevel, Util.backgroundExecutor(), Runnable::run);
 
             DataPackRegistries dataPackRegistries;
@@ -157,6 +212,8 @@ public class TestMain
             }
 
             dataPackRegistries.updateGlobals();
+            startupTimer.end();
+            startupTimer.begin("createLevel");
             WorldSettingsImport<INBT> worldSettingsImport = WorldSettingsImport.create(NBTDynamicOps.INSTANCE, dataPackRegistries.getResourceManager(), builtinRegistries);
 
             // Custom world settings, ignoring most of the options in server.properties
@@ -172,15 +229,38 @@ public class TestMain
 
             // Flat chunk generator. Modified from FlatPresetsScreen#<cinit>
             LOGGER.log(UNIT_TEST, "Setting random seed: " + testSeed);
-            final List<FlatLayerInfo> layers = new ArrayList<>(Arrays.asList(new FlatLayerInfo(1, Blocks.BEDROCK), new FlatLayerInfo(2, Blocks.DIRT), new FlatLayerInfo(1, Blocks.GRASS_BLOCK)));
+            // A void world has a single layer of air, which generates empty chunks, as with the 'The Void' preset. Test areas build their own floors
+            final List<FlatLayerInfo> layers = options.has(voidWorldSpec) ? new ArrayList<>(Collections.singletonList(new FlatLayerInfo(1, Blocks.AIR))) : new ArrayList<>(Arrays.asList(new FlatLayerInfo(1, Blocks.BEDROCK), new FlatLayerInfo(2, Blocks.DIRT), new FlatLayerInfo(1, Blocks.GRASS_BLOCK)));
             final FlatChunkGenerator chunkGenerator = new FlatChunkGenerator(new FlatGenerationSettings(biomeRegistry, new DimensionStructuresSettings(Optional.empty(), new HashMap<>()), layers, false, false, Optional.of(() -> biomeRegistry.getOrThrow(Biomes.PLAINS))));
             final DimensionGeneratorSettings testDimensionGeneratorSettings = new DimensionGeneratorSettings(testSeed, false, false, DimensionGeneratorSettings.withOverworld(dimensionTypeRegistry, dimensionRegistry, chunkGenerator));
 
             final IServerConfiguration serverConfiguration = new ServerWorldInfo(worldSettings, testDimensionGeneratorSettings, Lifecycle.stable());
             levelSave.saveDataTag(builtinRegistries, serverConfiguration);
+            startupTimer.end();
 
             final boolean crashOnFailedTests = options.has(crashOnFailedTestsSpec);
-            final DedicatedTestServer server = MinecraftServer.spin(threadIn -> new DedicatedTestServer(threadIn, builtinRegistries, levelSave, resourcePacks, dataPackRegistries, serverConfiguration, serverPropertiesProvider, DataFixesManager.getDataFixer(), sessionService, profileRepository, profileCache, LoggingChunkStatusListener::new, crashOnFailedTests));
+            final boolean rerunFailed = options.has(rerunFailedSpec);
+            final long timeLimit = 1000L * options.valueOf(timeLimitSpec);
+            final long maxTickTime = 1000L * options.valueOf(maxTickTimeSpec);
+            final boolean profileIntegrationTests = options.has(profileIntegrationTestsSpec);
+            final JUnitTestRunner unitTestRunner = new JUnitTestRunner(options.valuesOf(unitTestPackageSpec), options.valuesOf(unitTestTagSpec), options.has(cacheUnitTestClassesSpec));
+            final DedicatedTestServer server = MinecraftServer.spin(threadIn -> new DedicatedTestServer(threadIn, builtinRegistries, levelSave, resourcePacks, dataPackRegistries, serverConfiguration, serverPropertiesProvider, DataFixesManager.getDataFixer(), sessionService, profileRepository, profileCache, radius -> new LoggingChunkStatusListener(radius)
+            {
+                // Time preparing the spawn chunks, which happens within initServer()
+                @Override
+                public void updateSpawnPos(ChunkPos center)
+                {
+                    startupTimer.begin("prepareSpawn");
+                    super.updateSpawnPos(center);
+                }
+
+                @Override
+                public void stop()
+                {
+                    super.stop();
+                    startupTimer.end();
+                }
+            }, crashOnFailedTests, failFast, rerunFailed, timeLimit, maxTickTime, profileIntegrationTests, unitTestRunner, startupTimer, options.has(unloadSpawnChunksSpec), options.has(skipSpawnPreparationSpec)));
 
             Thread thread = new Thread("Server Shutdown Thread")
             {
@@ -0,0 +1,137 @@
+/*
+ * Part of MCJUnitLib by AlcatrazEscapee
+ * Work under Copyright. See the project LICENSE.md for details.
+ */
+
+package com.alcatrazescapee.mcjunitlib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.alcatrazescapee.mcjunitlib.framework.IntegrationTestManager;
+
+/**
+ * A replacement for the vanilla server watchdog, which is disabled by {@link DedicatedTestServer#getMaxTickLength()}.
+ * Rather than crashing on any long tick, this watches for a stalled tick while tests are running, or a run exceeding its time limit.
+ * When either happens, the test executing on the server thread is failed, reports are written, and the server exits.
+ * The failure is handed to the server thread, so it is not modifying test state at the same time. If it does not recover within a short time, reports are written from a copy of the test state instead.
+ */
+class TestServerWatchdog implements Runnable
+{
+    private static final Level UNIT_TEST = Level.forName("UNITTEST", 50);
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final long CHECK_INTERVAL = 1000; // ms
+    private static final long TIME_LIMIT_GRACE = 30_000; // ms, time given to the server thread to exit by itself once the time limit is reached
+    private static final long STALL_GRACE = 10_000; // ms, time given to the server thread to fail the stalled test by itself
+    private static final int MAX_REPORTED_FRAMES = 10;
+
+    private final DedicatedTestServer server;
+    private final long deadline;
+    private final long maxTickTime;
+    private final StartupTimer startupTimer;
+
+    TestServerWatchdog(DedicatedTestServer server, long deadline, long maxTickTime, StartupTimer startupTimer)
+    {
+        this.server = server;
+        this.deadline = deadline;
+        this.maxTickTime = maxTickTime;
+        this.startupTimer = startupTimer;
+    }
+
+    @Override
+    public void run()
+    {
+        long runningSince = 0; // When tests were first seen running. Ticks are only measured from then, so setup and unit tests are not limited
+        while (server.isRunning() && !server.allTestsFinished())
+        {
+            final long now = System.currentTimeMillis();
+            if (runningSince == 0 && IntegrationTestManager.INSTANCE.isRunning())
+            {
+                runningSince = now;
+            }
+
+            final long tickStartTime = Math.max(server.getTickStartTime(), runningSince);
+            if (maxTickTime > 0 && runningSince > 0 && server.getTickStartTime() > 0 && now - tickStartTime > maxTickTime)
+            {
+                stall("A single server tick took " + (now - tickStartTime) / 1000 + " s (max tick time = " + maxTickTime / 1000 + " s)");
+                return;
+            }
+            if (now > deadline + TIME_LIMIT_GRACE)
+            {
+                stall("The test run exceeded the time limit by " + (now - deadline) / 1000 + " s, and the server did not stop");
+                return;
+            }
+
+            try
+            {
+                Thread.sleep(CHECK_INTERVAL);
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+        }
+    }
+
+    private void stall(String reason)
+    {
+        final Thread serverThread = server.getRunningThread();
+        final String executingTest = IntegrationTestManager.INSTANCE.getExecutingTest();
+
+        LOGGER.log(UNIT_TEST, "Watchdog: {}", reason);
+        LOGGER.log(UNIT_TEST, "Watchdog: Executing test: {}", executingTest == null ? "None" : executingTest);
+        LOGGER.log(UNIT_TEST, "Watchdog: Server thread stack:");
+
+        final List<String> errors = new ArrayList<>();
+        errors.add(reason);
+        final StackTraceElement[] stack = serverThread.getStackTrace();
+        for (int i = 0; i < stack.length; i++)
+        {
+            LOGGER.log(UNIT_TEST, "\tat {}", stack[i]);
+            if (i < MAX_REPORTED_FRAMES)
+            {
+                errors.add("at " + stack[i]);
+            }
+        }
+
+        // Give the server thread a chance to fail the test itself. If it does not, it is not coming back, so results are written from this thread instead
+        IntegrationTestManager.INSTANCE.requestFailExecutingTest(errors);
+        final long stallDeadline = System.currentTimeMillis() + STALL_GRACE;
+        while (!IntegrationTestManager.INSTANCE.isComplete() && System.currentTimeMillis() < stallDeadline)
+        {
+            try
+            {
+                Thread.sleep(100);
+            }
+            catch (InterruptedException e)
+            {
+                break;
+            }
+        }
+        if (!IntegrationTestManager.INSTANCE.isComplete())
+        {
+            IntegrationTestManager.INSTANCE.writeStalledResults();
+        }
+        startupTimer.finish();
+        server.markCrashed();
+
+        // In the event that shutdown hangs, halt the JVM. This is the same as the vanilla ServerHangWatchdog
+        final Timer timer = new Timer();
+        timer.schedule(new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                Runtime.getRuntime().halt(1);
+            }
+        }, 10_000L);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,82 @@
+package com.alcatrazescapee.mcjunitlib.framework;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import javax.annotation.Nullable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Measures the bytes allocated by the server thread while ticking integration tests.
+ * This is used to verify that the steady state tick path (where no test completes or fails) does not allocate.
+ *
+ * Relies on the HotSpot specific {@link com.sun.management.ThreadMXBean}. If it is not available, measuring is disabled.
+ */
+final class AllocationCounter
+{
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final int CALIBRATION_ROUNDS = 16;
+
+    @Nullable private com.sun.management.ThreadMXBean threadBean;
+    private long overhead; // The bytes allocated by a single measurement, which are subtracted from each result
+    private long steadyBytes, steadyMaxBytes;
+    private int steadyTicks;
+
+    /**
+     * Enables measuring, if it is supported.
+     */
+    void enable()
+    {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+        {
+            threadBean = (com.sun.management.ThreadMXBean) bean;
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+
+            overhead = Long.MAX_VALUE;
+            for (int i = 0; i < CALIBRATION_ROUNDS; i++)
+            {
+                final long before = get();
+                overhead = Math.min(overhead, get() - before);
+            }
+        }
+        else
+        {
+            LOGGER.warn("Measuring tick allocations is not supported on this JVM");
+        }
+    }
+
+    boolean isEnabled()
+    {
+        return threadBean != null;
+    }
+
+    /**
+     * @return The total bytes allocated by the current thread, or zero if not enabled.
+     */
+    long get()
+    {
+        return threadBean != null ? threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    /**
+     * @param before       The value of {@link #get()} at the start of the measured section
+     * @param steadyState  If no tests completed during the measured section. Only these are recorded, as completing a test is expected to allocate.
+     */
+    void record(long before, boolean steadyState)
+    {
+        if (threadBean != null && steadyState)
+        {
+            final long bytes = Math.max(0, get() - before - overhead);
+            steadyBytes += bytes;
+            steadyMaxBytes = Math.max(steadyMaxBytes, bytes);
+            steadyTicks++;
+        }
+    }
+
+    String summary()
+    {
+        return String.format("%.1f bytes / tick (max %d bytes) over %d steady state ticks", steadyTicks == 0 ? 0f : (float) steadyBytes / steadyTicks, steadyMaxBytes, steadyTicks);
+    }
+}
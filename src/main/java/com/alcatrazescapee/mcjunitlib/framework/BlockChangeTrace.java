@@ -0,0 +1,73 @@
+package com.alcatrazescapee.mcjunitlib.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+
+/**
+ * A fixed size ring buffer of the most recent block changes within a test's area.
+ * Each entry is the tick, the position relative to the test origin, and the state id, stored in flat arrays so recording does not allocate.
+ */
+final class BlockChangeTrace
+{
+    private static final int POS_BITS = 10, POS_MASK = (1 << POS_BITS) - 1, POS_OFFSET = 1 << (POS_BITS - 1);
+
+    private final int[] ticks;
+    private final int[] positions;
+    private final int[] states;
+    private int next; // Index the next entry will be written to
+    private int size;
+    private int dropped; // Entries which have been overwritten
+
+    BlockChangeTrace(int capacity)
+    {
+        this.ticks = new int[capacity];
+        this.positions = new int[capacity];
+        this.states = new int[capacity];
+    }
+
+    /**
+     * @param x The x position, relative to the test origin
+     * @param y The y position, relative to the test origin
+     * @param z The z position, relative to the test origin
+     */
+    void record(int tick, int x, int y, int z, BlockState state)
+    {
+        ticks[next] = tick;
+        positions[next] = ((x + POS_OFFSET) & POS_MASK) << (2 * POS_BITS) | ((y + POS_OFFSET) & POS_MASK) << POS_BITS | ((z + POS_OFFSET) & POS_MASK);
+        states[next] = Block.getId(state);
+        next = (next + 1) % ticks.length;
+        if (size < ticks.length)
+        {
+            size++;
+        }
+        else
+        {
+            dropped++;
+        }
+    }
+
+    /**
+     * @return The recorded entries, oldest first, as human readable lines
+     */
+    List<String> toLines()
+    {
+        final List<String> lines = new ArrayList<>(size + 1);
+        if (dropped > 0)
+        {
+            lines.add("(" + dropped + " earlier block changes were not kept)");
+        }
+        for (int i = 0; i < size; i++)
+        {
+            final int index = (next - size + i + ticks.length) % ticks.length;
+            final int pos = positions[index];
+            final int x = ((pos >> (2 * POS_BITS)) & POS_MASK) - POS_OFFSET;
+            final int y = ((pos >> POS_BITS) & POS_MASK) - POS_OFFSET;
+            final int z = (pos & POS_MASK) - POS_OFFSET;
+            lines.add("Tick " + ticks[index] + ": [" + x + ", " + y + ", " + z + "] " + Block.stateById(states[index]));
+        }
+        return lines;
+    }
+}
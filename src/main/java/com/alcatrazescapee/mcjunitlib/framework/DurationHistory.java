@@ -0,0 +1,103 @@
+package com.alcatrazescapee.mcjunitlib.framework;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * How long each test took in previous runs, in ticks and in wall time, which is used to estimate how long it will take in the next run.
+ * Stored as lines of {@code name ticks millis}, separated by tabs. Each new duration is averaged with the previous estimate, so a single slow run does not dominate.
+ */
+final class DurationHistory
+{
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final String FILE = "durations.txt";
+    private static final int DEFAULT_ESTIMATE = 200; // Ticks, for tests with no history and no time out
+
+    private final String file;
+    private final Map<String, Duration> durations;
+
+    DurationHistory()
+    {
+        this(FILE);
+    }
+
+    /**
+     * @param file The file the history is stored in, relative to the test output directory
+     */
+    DurationHistory(String file)
+    {
+        this.file = file;
+        this.durations = new HashMap<>();
+    }
+
+    void load()
+    {
+        durations.clear();
+        for (String line : TestFiles.readLines(file))
+        {
+            final String[] parts = line.split("\t");
+            if (parts.length == 3)
+            {
+                try
+                {
+                    durations.put(parts[0], new Duration(Integer.parseInt(parts[1]), Long.parseLong(parts[2])));
+                }
+                catch (NumberFormatException e)
+                {
+                    LOGGER.debug("Ignoring invalid test duration: {}", line);
+                }
+            }
+        }
+    }
+
+    void save()
+    {
+        final List<String> lines = new ArrayList<>();
+        durations.forEach((name, duration) -> lines.add(name + '\t' + duration.ticks + '\t' + duration.millis));
+        lines.sort(null);
+        TestFiles.writeLines(file, lines);
+    }
+
+    /**
+     * @return The estimated number of ticks a single copy of the test will take. Tests with no history are estimated by their time out, as the longest they could take.
+     */
+    int estimate(IntegrationTestRunner test)
+    {
+        final Duration duration = durations.get(test.getName());
+        if (duration != null)
+        {
+            return duration.ticks;
+        }
+        return test.getTimeoutTicks() != -1 ? test.getTimeoutTicks() : DEFAULT_ESTIMATE;
+    }
+
+    void record(IntegrationTestRunner test, int ticks, long millis)
+    {
+        final Duration previous = durations.get(test.getName());
+        if (previous != null)
+        {
+            durations.put(test.getName(), new Duration((ticks + previous.ticks + 1) / 2, (millis + previous.millis + 1) / 2));
+        }
+        else
+        {
+            durations.put(test.getName(), new Duration(ticks, millis));
+        }
+    }
+
+    private static final class Duration
+    {
+        private final int ticks;
+        private final long millis;
+
+        private Duration(int ticks, long millis)
+        {
+            this.ticks = ticks;
+            this.millis = millis;
+        }
+    }
+}
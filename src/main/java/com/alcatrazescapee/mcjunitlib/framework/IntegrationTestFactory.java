@@ -36,8 +36,42 @@ public @interface IntegrationTestFactory
     /**
      * How often this test's conditions should be checked.
      * By default, they will be re-evaluated every 10 ticks.
+     * Tests are offset from each other so they do not all check their conditions on the same tick, which may delay the first check by up to one interval.
      *
      * @return A number of ticks > 0
      */
     int refreshTicks() default 10;
+
+    /**
+     * If true, this test's conditions are checked every tick at first, and then with an interval which doubles after each check, up to eight times {@link #refreshTicks()}.
+     * The interval is reset whenever a scheduled action runs. This lets fast tests pass sooner, and makes long-waiting tests cheaper to check.
+     * This can also be enabled for all tests with the {@code --adaptiveRefresh} test server option.
+     *
+     * @return If the refresh interval should adapt to how long the test has been waiting
+     */
+    boolean adaptiveRefresh() default false;
+
+    /**
+     * How many copies of this test should be set up and run at once, each in a separate area.
+     * This is useful for detecting intermittent failures. The test passes only if every copy passes.
+     *
+     * @return A number of copies > 0, or -1 to use the default (set by the {@code --repeat} test server option, otherwise 1).
+     */
+    int repeat() default -1;
+
+    /**
+     * The maximum number of entities (other than players) which may be in this test's area at once. If exceeded, the test fails.
+     * This is checked every refresh interval. It can be used to stop a test which spawns unbounded entities before it slows down every other test.
+     *
+     * @return A number of entities >= 0, or -1 to indicate there is no maximum.
+     */
+    int maxEntities() default -1;
+
+    /**
+     * Only used with the {@code --quietWorld} test server option, which otherwise disables random ticks.
+     * If any test which is run requires random ticks, they are enabled (at the default speed) for the entire world while tests are running.
+     *
+     * @return If this test requires random ticks, for instance for crop growth.
+     */
+    boolean randomTicks() default false;
 }
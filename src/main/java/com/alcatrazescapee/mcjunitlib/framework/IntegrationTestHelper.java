@@ -1,15 +1,17 @@
 package com.alcatrazescapee.mcjunitlib.framework;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.BooleanSupplier;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import javax.annotation.Nullable;
 
 import net.minecraft.block.*;
+import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.fluid.Fluid;
 import net.minecraft.fluid.FluidState;
@@ -18,17 +20,26 @@ import net.minecraft.item.BlockItem;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.ItemUseContext;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.ListNBT;
+import net.minecraft.nbt.NBTUtil;
 import net.minecraft.tags.ITag;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.tileentity.TileEntityType;
 import net.minecraft.util.Direction;
 import net.minecraft.util.Hand;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.BlockRayTraceResult;
 import net.minecraft.util.math.MutableBoundingBox;
 import net.minecraft.util.math.vector.Vector3d;
+import net.minecraft.world.NextTickListEntry;
+import net.minecraft.world.World;
+import net.minecraft.world.gen.feature.template.Template;
 import net.minecraft.world.server.ServerWorld;
-import net.minecraftforge.common.util.FakePlayerFactory;
+import net.minecraftforge.common.util.Constants;
+import net.minecraftforge.common.util.FakePlayer;
 
 /**
  * @see IntegrationTest
@@ -36,27 +47,88 @@ import net.minecraftforge.common.util.FakePlayerFactory;
  */
 public class IntegrationTestHelper
 {
+    // Results of ticking a test
+    static final int RUNNING = 0;
+    static final int PASSED = 1;
+    static final int FAILED = 2;
+
+    private static final int ADAPTIVE_REFRESH_LIMIT = 8; // The maximum adaptive refresh interval, as a multiple of the test's refresh ticks
+    private static final int ENTITY_MARGIN = 2; // Entities this far outside the test structure still belong to the test. This covers the floor border, but not the neighbouring plots
+
+    /**
+     * @param origin The origin of the test structure
+     * @param size   The size of the test structure
+     * @return The area in which entities are considered to belong to the test
+     */
+    static AxisAlignedBB getEntityBounds(BlockPos origin, BlockPos size)
+    {
+        return new AxisAlignedBB(origin, origin.offset(size)).inflate(ENTITY_MARGIN);
+    }
+
+    /**
+     * @return All entities within the area, other than players. Entities are found via the chunks which intersect the area, rather than by searching the entire world.
+     */
+    static List<Entity> getTestEntities(World world, AxisAlignedBB area)
+    {
+        return world.getEntitiesOfClass(Entity.class, area, entity -> !(entity instanceof PlayerEntity));
+    }
+
     private final ServerWorld world;
     private final IntegrationTestRunner test;
+    private final String name;
+    private final String templateName; // Cached, as it is used by test events
     private final BlockPos origin;
     private final MutableBoundingBox boundingBox;
+    private final AxisAlignedBB entityBounds;
+    private final BlockPos.Mutable cursor; // Only used for reading block and fluid states
+    private final int refreshPhase; // The offset of the ticks on which this test refreshes, so tests with the same refresh interval don't all refresh on the same tick
+    private final boolean adaptiveRefresh;
 
     private final List<Supplier<String>> assertions;
     private final List<ScheduledAction> scheduledActions;
+    private final List<String> failures; // Reused each time assertions are evaluated
 
+    private int startTick; // The tick this test was started on. Scheduled actions, and time outs, are relative to this
+    private long startTime; // The time, in nanoseconds, this test was started at
     private int lastScheduledAction; // The last scheduled action - time out ticks are added onto this value
     private boolean failFast; // If conditions will never be set to true
+    private int adaptiveRefreshInterval, nextAdaptiveRefresh; // When using an adaptive refresh, the current interval and the tick of the next refresh
+    @Nullable private BlockChangeTrace trace; // Recent block changes in the test area, if enabled
+    @Nullable private UpdateCounter updates; // Updates in the test area, if enabled
+    private TestEvents.Span testEvent; // The event covering this test, from when it is started until it has a result
+    @Nullable private MutableBoundingBox updateArea; // The test area, in world coordinates, in which scheduled ticks are counted
 
-    public IntegrationTestHelper(ServerWorld world, IntegrationTestRunner test, BlockPos origin, BlockPos size)
+    private final TestPlayerPool players;
+    @Nullable private FakePlayer player; // Taken from the pool when first used
+    private final Set<Item> usedItems; // Items used by the player, so their cooldowns can be reset
+
+    // Which part of this test is executing, so a stalled server thread can be attributed to it. Read by the test server watchdog
+    private volatile Phase executingPhase;
+    private volatile int executingIndex;
+
+    public IntegrationTestHelper(ServerWorld world, IntegrationTestRunner test, String name, BlockPos origin, BlockPos size, int refreshPhase, boolean adaptiveRefresh, TestPlayerPool players)
     {
         this.world = world;
         this.test = test;
+        this.name = name;
+        this.templateName = test.getTemplateName().toString();
         this.origin = origin;
         this.boundingBox = new MutableBoundingBox(BlockPos.ZERO, size.offset(1, 1, 1));
+        this.entityBounds = getEntityBounds(origin, size);
+        this.cursor = new BlockPos.Mutable();
+        this.refreshPhase = refreshPhase;
+        this.adaptiveRefresh = adaptiveRefresh;
+        this.players = players;
+        this.usedItems = new HashSet<>();
 
         this.assertions = new ArrayList<>();
         this.scheduledActions = new ArrayList<>();
+        this.failures = new ArrayList<>();
         this.failFast = false;
+        this.adaptiveRefreshInterval = 1;
+        this.nextAdaptiveRefresh = 0;
+        this.executingPhase = Phase.IDLE;
+        this.testEvent = TestEvents.Span.NONE;
     }
 
     public void destroyBlock(BlockPos pos)
@@ -102,16 +174,66 @@ public class IntegrationTestHelper
         useItem(pos, direction, stack, Vector3d.ZERO);
     }
 
+    /**
+     * Uses an item on a block, as this test's player. The item is placed in the player's main hand first.
+     */
     public void useItem(BlockPos pos, Direction direction, ItemStack stack, Vector3d hitVec)
+    {
+        setHeldItem(Hand.MAIN_HAND, stack);
+        useHeldItem(pos, direction, Hand.MAIN_HAND, hitVec);
+    }
+
+    /**
+     * Uses the item in one of this test's player's hands on a block.
+     */
+    public void useHeldItem(BlockPos pos, Direction direction, Hand hand, Vector3d hitVec)
     {
         relativePos(pos).ifPresent(actualPos -> {
-            PlayerEntity player = FakePlayerFactory.getMinecraft(world); // This is required because forge NPEs in place block
+            final FakePlayer player = getPlayer(); // This is required because forge NPEs in place block
+            final ItemStack stack = player.getItemInHand(hand);
+            usedItems.add(stack.getItem());
             BlockRayTraceResult rayTrace = new BlockRayTraceResult(hitVec, direction, actualPos, false);
-            ItemUseContext context = new ItemUseContext(world, player, Hand.MAIN_HAND, stack, rayTrace) {};
+            ItemUseContext context = new ItemUseContext(world, player, hand, stack, rayTrace) {};
             stack.useOn(context);
         });
     }
 
+    public void setHeldItem(Hand hand, ItemStack stack)
+    {
+        getPlayer().setItemInHand(hand, stack);
+    }
+
+    /**
+     * Moves this test's player.
+     *
+     * @param pos  The position, relative to the test structure
+     * @param yRot The rotation about the y axis (yaw)
+     * @param xRot The rotation about the x axis (pitch)
+     */
+    public void setPlayerPosition(Vector3d pos, float yRot, float xRot)
+    {
+        if (isInside(new BlockPos(pos)))
+        {
+            getPlayer().moveTo(origin.getX() + pos.x, origin.getY() + pos.y, origin.getZ() + pos.z, yRot, xRot);
+        }
+    }
+
+    /**
+     * Each test has its own simulated player, which is not shared with any other test that is running.
+     * The player starts with an empty inventory, at the origin of the test structure, and is reset once the test completes.
+     *
+     * @return The player used by this test, for instance to use items
+     */
+    public FakePlayer getPlayer()
+    {
+        if (player == null)
+        {
+            player = players.acquire(world);
+            player.moveTo(origin.getX() + 0.5, origin.getY(), origin.getZ() + 0.5, 0, 0);
+        }
+        return player;
+    }
+
     public void setBlockState(BlockPos pos, BlockState state)
     {
         relativePos(pos).ifPresent(actualPos -> world.setBlockAndUpdate(actualPos, state));
@@ -165,18 +287,19 @@ public class IntegrationTestHelper
 
     public BlockState getBlockState(BlockPos pos)
     {
-        return relativePos(pos).map(world::getBlockState).orElseGet(Blocks.AIR::defaultBlockState);
+        return isInside(pos) ? world.getBlockState(cursor.setWithOffset(origin, pos)) : Blocks.AIR.defaultBlockState();
     }
 
     public FluidState getFluidState(BlockPos pos)
     {
-        return relativePos(pos).map(world::getFluidState).orElseGet(Fluids.EMPTY::defaultFluidState);
+        return isInside(pos) ? world.getFluidState(cursor.setWithOffset(origin, pos)) : Fluids.EMPTY.defaultFluidState();
     }
 
     @Nullable
     public TileEntity getTileEntity(BlockPos pos)
     {
-        return relativePos(pos).map(world::getBlockEntity).orElse(null);
+        final BlockPos actualPos = absolutePos(pos);
+        return actualPos != null ? world.getBlockEntity(actualPos) : null;
     }
 
     public void assertAirAt(BlockPos pos, String message)
@@ -237,7 +360,7 @@ public class IntegrationTestHelper
     public void assertTileEntityAt(BlockPos pos, Predicate<TileEntity> condition, String message)
     {
         relativePos(pos).ifPresent(actualPos -> assertThat(() -> {
-            TileEntity te = world.getBlockEntity(pos);
+            TileEntity te = world.getBlockEntity(actualPos);
             if (te != null)
             {
                 return condition.test(te) ? null : message;
@@ -264,11 +387,118 @@ public class IntegrationTestHelper
             }
             else
             {
-                return "Tile entity at " + pos + "is not an instance of " + teClass.getName();
+                return "Tile entity at " + pos + " is not an instance of " + teClass.getName();
             }
         }));
     }
 
+    /**
+     * Asserts that every block in a region matches a condition.
+     * Chunk sections whose palette only contains matching states are accepted without checking each block.
+     *
+     * @param from One corner of the region (inclusive)
+     * @param to   The opposite corner of the region (inclusive)
+     */
+    public void assertRegion(BlockPos from, BlockPos to, Predicate<BlockState> condition, String message)
+    {
+        final MutableBoundingBox box = absoluteBox(from, to);
+        if (box != null)
+        {
+            assertThat(() -> {
+                final RegionMismatches mismatches = new RegionMismatches();
+                SectionScanner.scan(world, box, state -> !condition.test(state), (x, y, z, state) -> {
+                    if (!condition.test(state))
+                    {
+                        mismatches.add(x, y, z, null, state);
+                    }
+                });
+                return mismatches.isEmpty() ? null : message + " (" + mismatches + ")";
+            });
+        }
+    }
+
+    /**
+     * Asserts that a region contains an exact number of a block.
+     * Chunk sections whose palette does not contain the block are skipped without checking each block.
+     *
+     * @param from  One corner of the region (inclusive)
+     * @param to    The opposite corner of the region (inclusive)
+     * @param count The expected number of blocks
+     */
+    public void assertCount(BlockPos from, BlockPos to, Block block, int count, String message)
+    {
+        final MutableBoundingBox box = absoluteBox(from, to);
+        if (box != null)
+        {
+            assertThat(() -> {
+                final int[] found = {0};
+                SectionScanner.scan(world, box, state -> state.is(block), (x, y, z, state) -> {
+                    if (state.is(block))
+                    {
+                        found[0]++;
+                    }
+                });
+                return found[0] == count ? null : message + " (Expected " + count + " of " + block.getRegistryName() + ", but found " + found[0] + ")";
+            });
+        }
+    }
+
+    public void assertMatchesStructure(ResourceLocation structure)
+    {
+        assertMatchesStructure(structure, "Test area did not match the structure " + structure);
+    }
+
+    /**
+     * Asserts that the test area matches a structure, placed at the origin of the test area.
+     * Positions in the structure which contain structure voids are not checked.
+     *
+     * @param structure The name of a structure, as would be used by a structure block
+     */
+    public void assertMatchesStructure(ResourceLocation structure, String message)
+    {
+        final Template template = world.getStructureManager().get(structure);
+        if (template == null)
+        {
+            fail("Unknown structure " + structure);
+            return;
+        }
+
+        final BlockPos structureSize = template.getSize();
+        final MutableBoundingBox box = absoluteBox(BlockPos.ZERO, structureSize.offset(-1, -1, -1));
+        if (box != null)
+        {
+            // Read the expected state at each position from the saved structure, as the blocks of a template are not otherwise accessible
+            final CompoundNBT nbt = template.save(new CompoundNBT());
+            final ListNBT paletteNbt = nbt.contains("palettes", Constants.NBT.TAG_LIST) ? nbt.getList("palettes", Constants.NBT.TAG_LIST).getList(0) : nbt.getList("palette", Constants.NBT.TAG_COMPOUND);
+            final BlockState[] palette = new BlockState[paletteNbt.size()];
+            for (int i = 0; i < palette.length; i++)
+            {
+                palette[i] = NBTUtil.readBlockState(paletteNbt.getCompound(i));
+            }
+
+            final BlockState[] expected = new BlockState[structureSize.getX() * structureSize.getY() * structureSize.getZ()];
+            final ListNBT blocksNbt = nbt.getList("blocks", Constants.NBT.TAG_COMPOUND);
+            for (int i = 0; i < blocksNbt.size(); i++)
+            {
+                final CompoundNBT blockNbt = blocksNbt.getCompound(i);
+                final ListNBT posNbt = blockNbt.getList("pos", Constants.NBT.TAG_INT);
+                expected[(posNbt.getInt(1) * structureSize.getZ() + posNbt.getInt(2)) * structureSize.getX() + posNbt.getInt(0)] = palette[blockNbt.getInt("state")];
+            }
+
+            assertThat(() -> {
+                final RegionMismatches mismatches = new RegionMismatches();
+                SectionScanner.scan(world, box, state -> true, (x, y, z, state) -> {
+                    final BlockState expectedState = expected[((y - box.y0) * structureSize.getZ() + (z - box.z0)) * structureSize.getX() + (x - box.x0)];
+                    if (expectedState != null && expectedState != state)
+                    {
+                        mismatches.add(x, y, z, expectedState, state);
+                    }
+                });
+                return mismatches.isEmpty() ? null : message + " (" + mismatches + ")";
+            });
+        }
+    }
+
     /**
      * @param condition A condition describing if the test passes (true) or fails (false)
      * @param message   An error message for if the test fails
@@ -305,12 +535,7 @@ public class IntegrationTestHelper
      */
     public Optional<BlockPos> relativePos(BlockPos pos)
     {
-        if (boundingBox.isInside(pos))
-        {
-            return Optional.of(origin.offset(pos));
-        }
-        fail("Tried to access the position " + pos + " which was not inside the test area!");
-        return Optional.empty();
+        return Optional.ofNullable(absolutePos(pos));
     }
 
     /**
@@ -326,57 +551,295 @@ public class IntegrationTestHelper
         return world;
     }
 
-    Optional<TestResult> tick(int currentTick)
+    /**
+     * Ticks the test. Once the test has started, and no failures occur, this does not allocate.
+     *
+     * @param managerTick The current tick of the test manager, which is converted to ticks since this test started
+     * @return {@link #RUNNING}, {@link #PASSED}, or {@link #FAILED}. Once passed or failed, the result can be obtained via {@link #getResult(int)}.
+     */
+    int tick(int managerTick)
     {
+        final int currentTick = getTestTick(managerTick);
+        if (test.getMaxEntities() != -1 && (currentTick - refreshPhase) % test.getRefreshTicks() == 0)
+        {
+            // Check the entity budget every refresh interval, even while actions are running, so a test spawning unbounded entities is stopped early
+            final int entities = getTestEntities(world, entityBounds).size();
+            if (entities > test.getMaxEntities())
+            {
+                failures.clear();
+                failures.add(name + " Failed as there were " + entities + " entities in the test area, more than the maximum of " + test.getMaxEntities() + ".");
+                return FAILED;
+            }
+        }
+
         if (!scheduledActions.isEmpty())
         {
             // If actions are remaining, execute them
-            final Iterator<ScheduledAction> iterator = scheduledActions.iterator();
-            while (iterator.hasNext())
+            world.getProfiler().push("actions");
+            for (int i = 0; i < scheduledActions.size(); )
             {
-                ScheduledAction action = iterator.next();
+                ScheduledAction action = scheduledActions.get(i);
                 if (action.ticks <= currentTick)
                 {
+                    executingIndex = action.ticks;
+                    executingPhase = Phase.ACTION;
+                    final TestEvents.Span event = TestEvents.integrationTestAction(this, action.ticks);
                     action.action.run();
-                    iterator.remove();
+                    event.commit();
+                    scheduledActions.remove(i);
+
+                    // Any action may cause the test conditions to start changing, so check them frequently again
+                    adaptiveRefreshInterval = 1;
+                    nextAdaptiveRefresh = currentTick + 1;
+                }
+                else
+                {
+                    i++;
                 }
             }
+            executingPhase = Phase.IDLE;
+            world.getProfiler().pop();
         }
-        else if (currentTick % test.getRefreshTicks() == 0)
+        else if (shouldRefresh(currentTick))
         {
             // No remaining scheduled actions, so update conditions every refresh interval
 
             // Refresh conditions
-            final List<String> failures = new ArrayList<>();
-            for (Supplier<String> assertion : assertions)
+            failures.clear();
+            world.getProfiler().push("assertions");
+            final TestEvents.Span event = TestEvents.integrationTestAssertions(this);
+            for (int i = 0; i < assertions.size(); i++)
             {
-                String error = assertion.get();
+                executingIndex = i;
+                executingPhase = Phase.ASSERTION;
+                String error = assertions.get(i).get();
                 if (error != null)
                 {
                     failures.add(error);
                 }
             }
-
-            final int timeoutTicks = lastScheduledAction + test.getTimeoutTicks();
+            executingPhase = Phase.IDLE;
+            event.commit();
+            world.getProfiler().pop();
 
             if (failures.isEmpty())
             {
                 // No fails or scheduled actions - Test passed!
-                return TestResult.success();
+                return PASSED;
             }
             if (failFast)
             {
                 // Fail fast - used for invalid test configurations or direct calls to unconditional failures
-                return TestResult.fail(failures);
+                return FAILED;
             }
-            if (timeoutTicks != -1 && currentTick >= timeoutTicks)
+
+            final int timeoutTicks = lastScheduledAction + test.getTimeoutTicks();
+            if (test.getTimeoutTicks() != -1 && currentTick >= timeoutTicks)
             {
                 // Test failed due to time out
-                failures.add(test.getName() + " Failed after time out at " + timeoutTicks + " ticks.");
-                return TestResult.fail(failures);
+                failures.add(name + " Failed after time out at " + timeoutTicks + " ticks.");
+                return FAILED;
+            }
+
+            if (adaptiveRefresh)
+            {
+                // Back off, but never past the time out, so it is detected on time
+                adaptiveRefreshInterval = Math.min(adaptiveRefreshInterval * 2, test.getRefreshTicks() * ADAPTIVE_REFRESH_LIMIT);
+                nextAdaptiveRefresh = currentTick + adaptiveRefreshInterval;
+                if (test.getTimeoutTicks() != -1)
+                {
+                    nextAdaptiveRefresh = Math.min(nextAdaptiveRefresh, timeoutTicks);
+                }
+            }
+        }
+        return RUNNING;
+    }
+
+    private boolean shouldRefresh(int currentTick)
+    {
+        if (adaptiveRefresh)
+        {
+            return currentTick >= nextAdaptiveRefresh;
+        }
+        // The phase only ever delays a refresh, so no test is checked before its first full refresh interval
+        return currentTick >= test.getRefreshTicks() && (currentTick - refreshPhase) % test.getRefreshTicks() == 0;
+    }
+
+    /**
+     * @param managerTick The current tick of the test manager, on which this test passed or failed
+     * @return The result of this test, after {@link #tick(int)} has returned {@link #PASSED} or {@link #FAILED}
+     */
+    TestResult getResult(int managerTick)
+    {
+        return new TestResult(new ArrayList<>(failures), failures.isEmpty(), getTestTick(managerTick), getTestMillis());
+    }
+
+    /**
+     * @return The wall time, in milliseconds, since this test was started
+     */
+    long getTestMillis()
+    {
+        return (System.nanoTime() - startTime) / 1_000_000;
+    }
+
+    /**
+     * @param managerTick The current tick of the test manager
+     * @return The number of ticks since this test was started
+     */
+    int getTestTick(int managerTick)
+    {
+        return managerTick - startTick;
+    }
+
+    /**
+     * Gets the in-world position, based on a zero centered position within the test structure
+     *
+     * @return The corresponding world position, or null (and the test will fail) if the position was outside of the test structure.
+     */
+    @Nullable
+    BlockPos absolutePos(BlockPos pos)
+    {
+        if (isInside(pos))
+        {
+            return origin.offset(pos);
+        }
+        return null;
+    }
+
+    /**
+     * @return The region between two positions in world coordinates, or null (and the test will fail) if either position was outside of the test structure.
+     */
+    @Nullable
+    private MutableBoundingBox absoluteBox(BlockPos from, BlockPos to)
+    {
+        final BlockPos absoluteFrom = absolutePos(from), absoluteTo = absolutePos(to);
+        if (absoluteFrom != null && absoluteTo != null)
+        {
+            return new MutableBoundingBox(absoluteFrom, absoluteTo);
+        }
+        return null;
+    }
+
+    private boolean isInside(BlockPos pos)
+    {
+        if (boundingBox.isInside(pos))
+        {
+            return true;
+        }
+        fail("Tried to access the position " + pos + " which was not inside the test area!");
+        return false;
+    }
+
+    void startTrace(int capacity)
+    {
+        trace = new BlockChangeTrace(capacity);
+    }
+
+    void traceBlockChange(int managerTick, BlockPos pos, BlockState state)
+    {
+        if (trace != null)
+        {
+            trace.record(getTestTick(managerTick), pos.getX() - origin.getX(), pos.getY() - origin.getY(), pos.getZ() - origin.getZ(), state);
+        }
+    }
+
+    /**
+     * Stops recording block changes.
+     *
+     * @return The block changes recorded until now, or null if they were not recorded
+     */
+    @Nullable
+    BlockChangeTrace stopTrace()
+    {
+        final BlockChangeTrace stoppedTrace = trace;
+        trace = null;
+        return stoppedTrace;
+    }
+
+    void startCountingUpdates()
+    {
+        updates = new UpdateCounter();
+        updateArea = boundingBox.moved(origin.getX(), origin.getY(), origin.getZ());
+    }
+
+    void countUpdate(int type, int count)
+    {
+        if (updates != null)
+        {
+            updates.add(type, count);
+        }
+    }
+
+    /**
+     * Counts the scheduled block and fluid ticks in the test area which will run in the next world tick.
+     * This searches all scheduled ticks in the world, so it is only used when counting updates.
+     *
+     * @param dueTick The game time of the next world tick
+     */
+    void countScheduledTicks(long dueTick)
+    {
+        if (updates != null && updateArea != null)
+        {
+            int count = 0;
+            for (NextTickListEntry<Block> entry : world.getBlockTicks().fetchTicksInArea(updateArea, false, true))
+            {
+                if (entry.triggerTick <= dueTick)
+                {
+                    count++;
+                }
             }
+            for (NextTickListEntry<Fluid> entry : world.getLiquidTicks().fetchTicksInArea(updateArea, false, true))
+            {
+                if (entry.triggerTick <= dueTick)
+                {
+                    count++;
+                }
+            }
+            updates.add(UpdateCounter.SCHEDULED_TICKS, count);
+        }
+    }
+
+    void endUpdateTick()
+    {
+        if (updates != null)
+        {
+            updates.endTick();
+        }
+    }
+
+    /**
+     * Stops counting updates.
+     *
+     * @return The updates counted until now, or null if they were not counted
+     */
+    @Nullable
+    UpdateCounter stopCountingUpdates()
+    {
+        final UpdateCounter stoppedUpdates = updates;
+        if (stoppedUpdates != null)
+        {
+            stoppedUpdates.endTick(); // Include the tick this test completed on
+        }
+        updates = null;
+        return stoppedUpdates;
+    }
+
+    /**
+     * Returns this test's player to the pool, if it was used.
+     */
+    void releasePlayer()
+    {
+        if (player != null)
+        {
+            players.release(player, usedItems);
+            player = null;
+            usedItems.clear();
         }
-        return Optional.empty();
+    }
+
+    AxisAlignedBB getEntityBounds()
+    {
+        return entityBounds;
     }
 
     BlockPos getOrigin()
@@ -389,9 +852,59 @@ public class IntegrationTestHelper
         return test;
     }
 
-    void run()
+    /**
+     * @return The name of this test, including which copy it is, if the test is repeated
+     */
+    String getName()
+    {
+        return name;
+    }
+
+    String getTemplateName()
+    {
+        return templateName;
+    }
+
+    /**
+     * Runs the test method, which sets up actions and conditions.
+     *
+     * @param managerTick The current tick of the test manager, which this test's ticks are counted from
+     */
+    void run(int managerTick)
     {
+        startTick = managerTick;
+        startTime = System.nanoTime();
+        testEvent = TestEvents.integrationTest(this);
+        executingPhase = Phase.TEST_METHOD;
+        final TestEvents.Span event = TestEvents.integrationTestMethod(this);
         test.getTestAction().accept(this);
+        event.commit();
+        executingPhase = Phase.IDLE;
+    }
+
+    /**
+     * Ends the event covering this test, once it has a result.
+     */
+    void commitTestEvent(String result)
+    {
+        testEvent.setResult(result);
+        testEvent.commit();
+        testEvent = TestEvents.Span.NONE;
+    }
+
+    String getExecutingPhase()
+    {
+        switch (executingPhase)
+        {
+            case TEST_METHOD:
+                return "test method";
+            case ACTION:
+                return "action scheduled at tick " + executingIndex;
+            case ASSERTION:
+                return "assertion #" + (executingIndex + 1) + " of " + assertions.size();
+            default:
+                return "idle";
+        }
     }
 
     public final class ScheduleHelper
@@ -426,6 +939,49 @@ public class IntegrationTestHelper
         }
     }
 
+    enum Phase
+    {
+        IDLE,
+        TEST_METHOD,
+        ACTION,
+        ASSERTION
+    }
+
+    /**
+     * Collects positions in a region which did not match, and describes the first few of them.
+     */
+    private final class RegionMismatches
+    {
+        private static final int MAX_REPORTED = 5;
+
+        private final StringBuilder positions = new StringBuilder();
+        private int count;
+
+        void add(int x, int y, int z, @Nullable BlockState expected, BlockState actual)
+        {
+            if (count < MAX_REPORTED)
+            {
+                positions.append(count == 0 ? "" : ", ").append('[').append(x - origin.getX()).append(", ").append(y - origin.getY()).append(", ").append(z - origin.getZ()).append("] was ").append(actual);
+                if (expected != null)
+                {
+                    positions.append(" instead of ").append(expected);
+                }
+            }
+            count++;
+        }
+
+        boolean isEmpty()
+        {
+            return count == 0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return count + " position(s) did not match: " + positions + (count > MAX_REPORTED ? ", ..." : "");
+        }
+    }
+
     static final class ScheduledAction
     {
         final int ticks;
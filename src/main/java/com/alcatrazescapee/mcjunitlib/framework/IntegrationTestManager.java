@@ -5,6 +5,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.*;
 import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
 
@@ -14,16 +15,21 @@ import org.apache.logging.log4j.Logger;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.block.LecternBlock;
+import net.minecraft.entity.Entity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.Items;
 import net.minecraft.nbt.CompoundNBT;
 import net.minecraft.nbt.ListNBT;
 import net.minecraft.nbt.StringNBT;
+import net.minecraft.profiler.IProfiler;
 import net.minecraft.tileentity.LecternTileEntity;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.Direction;
 import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.GameRules;
 import net.minecraft.world.gen.feature.template.PlacementSettings;
 import net.minecraft.world.gen.feature.template.Template;
 import net.minecraft.world.gen.feature.template.TemplateManager;
@@ -33,6 +39,11 @@ import net.minecraftforge.fml.ModList;
 import net.minecraftforge.forgespi.language.ModFileScanData;
 
 import com.alcatrazescapee.mcjunitlib.framework.mod.ForgeEventHandler;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import org.objectweb.asm.Type;
 
 /**
@@ -50,6 +61,12 @@ public enum IntegrationTestManager
     private static final Logger LOGGER = LogManager.getLogger("IntegrationTests");
     private static final Level UNIT_TEST = Level.forName("UNITTEST", 50);
 
+    private static final String FAILED_TESTS_FILE = "failed-tests.txt";
+    private static final String REPORT_FILE = "integration-tests.json";
+    private static final String DEFAULT_RANDOM_TICK_SPEED = "3";
+    private static final String TRACES_DIRECTORY = "traces/";
+    private static final int TEST_FLOOR_Y = 3;
+
     private static String bootstrapModId;
 
     /**
@@ -116,6 +133,11 @@ public enum IntegrationTestManager
 
             final Object instance = ((method.getModifiers() & Modifier.STATIC) == Modifier.STATIC) ? null : clazz.newInstance();
             final IntegrationTest typedAnnotation = method.getDeclaredAnnotation(IntegrationTest.class);
+            if (!isValidRepeat(typedAnnotation.repeat()))
+            {
+                LOGGER.error("Unable to resolve integration test at {}.{} (Invalid repeat {} - Must be a number of copies > 0, or -1 for the default)", targetClass, targetName, typedAnnotation.repeat());
+                return null;
+            }
             final String className = testClassName(clazz);
             final String testName = testMethodName(typedAnnotation.value(), method.getName());
             final String testMethodName = clazz.getSimpleName() + '.' + method.getName();
@@ -132,7 +154,7 @@ public enum IntegrationTestManager
                     LOGGER.debug("Error", e);
                     helper.fail("Reflection Error: " + e.getMessage());
                 }
-            }, testMethodName, templateName, typedAnnotation.refreshTicks(), typedAnnotation.timeoutTicks());
+            }, testMethodName, templateName, typedAnnotation.refreshTicks(), typedAnnotation.adaptiveRefresh(), typedAnnotation.timeoutTicks(), typedAnnotation.repeat(), typedAnnotation.maxEntities(), typedAnnotation.randomTicks());
         }
         catch (ClassNotFoundException | NoSuchMethodException | InstantiationException | IllegalAccessException e)
         {
@@ -142,6 +164,11 @@ public enum IntegrationTestManager
         return null;
     }
 
+    private static boolean isValidRepeat(int repeat)
+    {
+        return repeat > 0 || repeat == -1;
+    }
+
     private static Stream<IntegrationTestRunner> createIntegrationTestStream(String modId, ModFileScanData.AnnotationData annotation)
     {
         final String targetClass = annotation.getClassType().getClassName();
@@ -165,6 +192,11 @@ public enum IntegrationTestManager
 
             final Object instance = ((method.getModifiers() & Modifier.STATIC) == Modifier.STATIC) ? null : clazz.newInstance();
             final IntegrationTestFactory typedAnnotation = method.getDeclaredAnnotation(IntegrationTestFactory.class);
+            if (!isValidRepeat(typedAnnotation.repeat()))
+            {
+                LOGGER.error("Unable to resolve dynamic integration test at {}.{} (Invalid repeat {} - Must be a number of copies > 0, or -1 for the default)", targetClass, targetName, typedAnnotation.repeat());
+                return Stream.empty();
+            }
             final String className = testClassName(clazz);
             final String testName = testMethodName(typedAnnotation.value(), method.getName());
             final String testMethodName = clazz.getSimpleName() + '.' + method.getName();
@@ -177,7 +209,7 @@ public enum IntegrationTestManager
                         if (obj instanceof DynamicIntegrationTest)
                         {
                             final DynamicIntegrationTest dynamic = (DynamicIntegrationTest) obj;
-                            return new IntegrationTestRunner(clazz, dynamic.getTestAction(), testMethodName + '/' + dynamic.getName(), templateName, typedAnnotation.refreshTicks(), typedAnnotation.timeoutTicks());
+                            return new IntegrationTestRunner(clazz, dynamic.getTestAction(), testMethodName + '/' + dynamic.getName(), templateName, typedAnnotation.refreshTicks(), typedAnnotation.adaptiveRefresh(), typedAnnotation.timeoutTicks(), typedAnnotation.repeat(), typedAnnotation.maxEntities(), typedAnnotation.randomTicks());
                         }
                         LOGGER.error("Unable to resolve dynamic integration test at {}.{} (Stream element was not a DynamicIntegrationTest)", targetClass, targetName);
                         return null;
@@ -216,21 +248,224 @@ public enum IntegrationTestManager
     private final HashMap<String, List<IntegrationTestRunner>> sortedTests;
     private final List<IntegrationTestRunner> allTests;
     private final List<IntegrationTestHelper> activeTests;
+    private final Map<IntegrationTestRunner, List<TestResult>> results;
+    private final Set<IntegrationTestRunner> abortedTests;
+    private final Set<String> previouslyFailedTests;
+    private final Map<ResourceLocation, PlotSnapshot> snapshots; // By template, as tests from the same factory share a template
+    private final Map<BlockPos, PlotSnapshot> placedPlots; // The snapshot each plot was last built from, by plot origin
+    private final Deque<PlotSetup> pendingSetup; // Plots which have been laid out but not yet built
+    private final PlotIndex<IntegrationTestHelper> plots; // The test which was set up in each plot
+    private final LongSet forcedChunks; // Chunks containing test plots, which are kept loaded
+    private final TestPlayerPool players;
+    private final AllocationCounter allocationCounter;
+    private final DurationHistory durations;
+    private final Map<IntegrationTestRunner, UpdateCounter> updateCounts; // Updates counted for each test, combined over all copies
 
     private int passedTests, failedTests;
     private int currentTick;
-    private Status status;
+    private boolean failFast;
+    private int repeat;
+    private boolean adaptiveRefresh;
+    private boolean quietWorld;
+    private boolean voidWorld;
+    private int traceCapacity;
+    private boolean countUpdates;
+    private long setupBudget; // In nanoseconds, or zero for no limit
+    private int shardIndex, shardCount;
+    @Nullable private DurationHistory shardDurations; // A duration history shared by all shards, used to balance them
+    private volatile Status status; // Read by the test server watchdog
+
+    private int restoredPlots, builtPlots, restoredPositions, removedEntities; // Statistics for the current setup
+    @Nullable private BiConsumer<String, Boolean> setupLogger; // Notified once the current setup has finished
+
+    @Nullable private volatile IntegrationTestHelper executingTest; // The test currently executing on the server thread, read by the test server watchdog
+    @Nullable private volatile Stall pendingStall; // A stalled test reported by the test server watchdog, which is failed on the server thread
 
     IntegrationTestManager()
     {
         this.allTests = new ArrayList<>();
         this.sortedTests = new HashMap<>();
         this.activeTests = new ArrayList<>();
+        this.results = new LinkedHashMap<>();
+        this.abortedTests = new LinkedHashSet<>();
+        this.previouslyFailedTests = new HashSet<>();
+        this.snapshots = new HashMap<>();
+        this.placedPlots = new HashMap<>();
+        this.pendingSetup = new ArrayDeque<>();
+        this.plots = new PlotIndex<>();
+        this.forcedChunks = new LongOpenHashSet();
+        this.players = new TestPlayerPool();
+        this.allocationCounter = new AllocationCounter();
+        this.durations = new DurationHistory();
+        this.updateCounts = new LinkedHashMap<>();
         this.passedTests = 0;
         this.failedTests = 0;
+        this.failFast = false;
+        this.repeat = 1;
+        this.adaptiveRefresh = false;
+        this.quietWorld = false;
+        this.traceCapacity = 0;
+        this.countUpdates = false;
+        this.setupBudget = 0;
+        this.shardIndex = 0;
+        this.shardCount = 1;
         this.status = Status.WAITING;
     }
 
+    /**
+     * If enabled, the first failed test will abort all remaining running tests.
+     */
+    public void setFailFast(boolean failFast)
+    {
+        this.failFast = failFast;
+    }
+
+    /**
+     * @param repeat The number of copies of each test to run, unless specified by {@link IntegrationTest#repeat()}
+     */
+    public void setRepeat(int repeat)
+    {
+        this.repeat = Math.max(1, repeat);
+    }
+
+    /**
+     * If enabled, all tests use an adaptive refresh interval, as if they specified {@link IntegrationTest#adaptiveRefresh()}
+     */
+    public void setAdaptiveRefresh(boolean adaptiveRefresh)
+    {
+        this.adaptiveRefresh = adaptiveRefresh;
+    }
+
+    /**
+     * If enabled, world simulation which is not caused by a test is disabled: random ticks (unless a test requests them with {@link IntegrationTest#randomTicks()}), fire spread, raids, and entities outside of test areas.
+     */
+    public void setQuietWorld(boolean quietWorld)
+    {
+        this.quietWorld = quietWorld;
+    }
+
+    public boolean isQuietWorld()
+    {
+        return quietWorld;
+    }
+
+    /**
+     * If the world is generated without any terrain, in which case only test floors, and a platform at the spawn point, are built.
+     */
+    public void setVoidWorld(boolean voidWorld)
+    {
+        this.voidWorld = voidWorld;
+    }
+
+    public boolean isVoidWorld()
+    {
+        return voidWorld;
+    }
+
+    /**
+     * @return If the position is inside the area of a test which has been set up
+     */
+    public boolean isInTestArea(double x, double y, double z)
+    {
+        return plots.get(x, y, z) != null;
+    }
+
+    /**
+     * If enabled, the most recent block changes in each test's area are recorded while it runs, and written to a file if the test fails.
+     *
+     * @param traceCapacity The number of block changes to keep for each test, or 0 to disable
+     */
+    public void setTraceBlockChanges(int traceCapacity)
+    {
+        this.traceCapacity = Math.max(0, traceCapacity);
+    }
+
+    /**
+     * If enabled, block updates, neighbor notifications, scheduled ticks and block entity ticks are counted for each test, and reported once all tests are finished.
+     */
+    public void setCountUpdates(boolean countUpdates)
+    {
+        this.countUpdates = countUpdates;
+    }
+
+    /**
+     * Called when a block is changed or updated in the test world, and notifies its neighbors, in order to record it in the trace of the test it belongs to, and count it.
+     *
+     * @param notifiedSides The number of neighbors which were notified
+     */
+    public void onBlockChanged(BlockPos pos, BlockState state, int notifiedSides)
+    {
+        if ((traceCapacity > 0 || countUpdates) && status == Status.RUNNING)
+        {
+            final IntegrationTestHelper helper = plots.get(pos.getX() + 0.5, pos.getY() + 0.5, pos.getZ() + 0.5);
+            if (helper != null)
+            {
+                helper.traceBlockChange(currentTick, pos, state);
+                helper.countUpdate(UpdateCounter.BLOCK_UPDATES, 1);
+                helper.countUpdate(UpdateCounter.NEIGHBOR_NOTIFICATIONS, notifiedSides);
+            }
+        }
+    }
+
+    /**
+     * Limits the time spent setting up test plots in each tick. Plots which are not set up in a tick are set up in the following ticks.
+     * Once tests are running, each test starts as soon as its plot is set up.
+     *
+     * @param setupBudget The time in milliseconds, or 0 for no limit, in which case all plots are set up at once
+     */
+    public void setSetupBudget(int setupBudget)
+    {
+        this.setupBudget = Math.max(0, setupBudget) * 1_000_000L;
+    }
+
+    /**
+     * Runs only one of several disjoint shards of the tests, so tests can be split across several processes.
+     * By default, tests are assigned to shards by name only, so shards have a similar number of tests, but are not balanced by how long their tests take.
+     * See {@link #setShardDurations(String)} to balance shards.
+     *
+     * @param shardIndex The shard to run, from 0 to shardCount - 1
+     * @param shardCount The total number of shards
+     */
+    public void setShard(int shardIndex, int shardCount)
+    {
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount)
+        {
+            throw new IllegalArgumentException("Invalid shard " + shardIndex + " of " + shardCount);
+        }
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Balances shards using a duration history which is shared by all shards, such as a copy of {@code durations.txt} committed alongside the tests.
+     * This file is only read, never written, so each shard computes the same assignment from it, regardless of the tests each shard has run.
+     *
+     * @param file The file, relative to the test output directory, or absolute
+     */
+    public void setShardDurations(String file)
+    {
+        this.shardDurations = new DurationHistory(file);
+    }
+
+    /**
+     * If enabled, the bytes allocated while ticking tests are measured, and reported once all tests are finished.
+     */
+    public void setMeasureTickAllocations(boolean measureTickAllocations)
+    {
+        if (measureTickAllocations)
+        {
+            allocationCounter.enable();
+        }
+    }
+
+    /**
+     * @return If all test plots from the most recent setup have been built
+     */
+    public boolean isSetupFinished()
+    {
+        return (status == Status.SETUP || status == Status.RUNNING || status == Status.FINISHED) && pendingSetup.isEmpty();
+    }
+
     public boolean isComplete()
     {
         return status == Status.FINISHED;
@@ -241,6 +476,146 @@ public enum IntegrationTestManager
         return failedTests > 0;
     }
 
+    /**
+     * This is safe to call from outside the server thread.
+     *
+     * @return A description of the test, and which part of it, which is currently executing, or null if no test is executing.
+     */
+    @Nullable
+    public String getExecutingTest()
+    {
+        final IntegrationTestHelper helper = executingTest;
+        return helper == null ? null : helper.getName() + " (" + helper.getExecutingPhase() + ")";
+    }
+
+    /**
+     * This is safe to call from outside the server thread.
+     *
+     * @return If tests are currently running (after setup, and before all tests are finished).
+     */
+    public boolean isRunning()
+    {
+        return status == Status.RUNNING;
+    }
+
+    /**
+     * Reports that the server thread has stalled, from outside the server thread.
+     * The test which is currently executing is failed, all others are aborted, and results are written, on the server thread at the start of its next tick.
+     * If the server thread does not recover, {@link #writeStalledResults()} should be used instead.
+     *
+     * @param errors The errors to report for the executing test
+     */
+    public void requestFailExecutingTest(List<String> errors)
+    {
+        pendingStall = new Stall(executingTest, errors, currentTick);
+    }
+
+    /**
+     * Writes results for a stalled server thread which has not recovered, from outside the server thread.
+     * The results are built from a copy of the current state, which is not modified, as the server thread may still be running.
+     */
+    public void writeStalledResults()
+    {
+        final Stall stall = pendingStall;
+        if (stall == null || status == Status.FINISHED)
+        {
+            return;
+        }
+
+        final Map<IntegrationTestRunner, List<TestResult>> stalledResults = new HashMap<>();
+        final Set<IntegrationTestRunner> stalledAbortedTests = new LinkedHashSet<>();
+        for (int attempt = 0; ; attempt++)
+        {
+            try
+            {
+                stalledResults.clear();
+                stalledAbortedTests.clear();
+                results.forEach((test, testResults) -> stalledResults.put(test, new ArrayList<>(testResults)));
+                stalledAbortedTests.addAll(abortedTests);
+                for (IntegrationTestHelper activeTest : new ArrayList<>(activeTests))
+                {
+                    if (activeTest != stall.helper)
+                    {
+                        stalledAbortedTests.add(activeTest.getTest());
+                    }
+                }
+                for (PlotSetup plotSetup : new ArrayList<>(pendingSetup))
+                {
+                    stalledAbortedTests.add(plotSetup.helper.getTest());
+                }
+                break;
+            }
+            catch (ConcurrentModificationException e)
+            {
+                // The server thread is still making progress, try again
+                if (attempt >= 10)
+                {
+                    LOGGER.log(UNIT_TEST, "Unable to copy test results from the server thread, no results will be written.");
+                    return;
+                }
+            }
+        }
+
+        if (stall.helper != null)
+        {
+            stalledResults.computeIfAbsent(stall.helper.getTest(), key -> new ArrayList<>()).add(new TestResult(stall.errors, false, stall.helper.getTestTick(stall.tick), stall.helper.getTestMillis()));
+        }
+
+        final int passed = (int) stalledResults.keySet().stream().filter(test -> getStatus(test, stalledResults) == TestStatus.PASSED).count();
+        final int failed = (int) stalledResults.keySet().stream().filter(test -> getStatus(test, stalledResults) == TestStatus.FAILED).count();
+        final int aborted = (int) stalledAbortedTests.stream().filter(test -> getStatus(test, stalledResults) == TestStatus.ABORTED).count();
+        LOGGER.log(UNIT_TEST, "Integration Testing Stalled! Passed: {}, Failed: {}, Aborted: {}", passed, failed, aborted);
+        writeResults(stalledResults, stalledAbortedTests, passed, failed, aborted);
+    }
+
+    /**
+     * Fails all tests which are still running, for instance if the run has exceeded its time limit.
+     * If tests have not started running yet, all tests which were, or would have been, selected to run are aborted instead. In either case, results are written.
+     *
+     * @param rerunFailed If only the tests which failed in the previous run would have been selected
+     */
+    public void failAllTests(ServerWorld world, String error, boolean rerunFailed)
+    {
+        if (status == Status.RUNNING)
+        {
+            for (IntegrationTestHelper helper : activeTests)
+            {
+                completeTest(world, helper, new TestResult(Collections.singletonList(error), false, helper.getTestTick(currentTick), helper.getTestMillis()));
+            }
+            for (PlotSetup plotSetup : pendingSetup)
+            {
+                abortedTests.add(plotSetup.helper.getTest());
+            }
+            activeTests.clear();
+            pendingSetup.clear();
+            finishTests(world);
+        }
+        else if (status == Status.SETUP)
+        {
+            // All selected tests are either set up, or waiting to be
+            abortRemainingTests(world);
+            finishTests(world);
+        }
+        else if (status == Status.WAITING || status == Status.VERIFIED)
+        {
+            passedTests = failedTests = 0;
+            results.clear();
+            updateCounts.clear();
+            abortedTests.clear();
+            previouslyFailedTests.clear();
+            previouslyFailedTests.addAll(TestFiles.readLines(FAILED_TESTS_FILE));
+            durations.load();
+
+            Predicate<IntegrationTestRunner> filter = rerunFailed ? test -> previouslyFailedTests.contains(test.getName()) : test -> true;
+            if (shardCount > 1)
+            {
+                filter = filter.and(getShard()::contains);
+            }
+            allTests.stream().filter(filter).forEach(abortedTests::add);
+            finishTests(world);
+        }
+    }
+
     public boolean verifyAllTests(ServerWorld world, BiConsumer<String, Boolean> logger)
     {
         if (status == Status.WAITING)
@@ -268,6 +643,22 @@ public enum IntegrationTestManager
     }
 
     public void setupAllTests(ServerWorld world, BiConsumer<String, Boolean> logger)
+    {
+        setupTests(world, logger, test -> true);
+    }
+
+    /**
+     * Sets up only the tests which failed in the previous run, as recorded in the failed tests file.
+     * Test plots are positioned identically to {@link #setupAllTests(ServerWorld, BiConsumer)}, so plots from a previous setup can be reused.
+     */
+    public void setupFailedTests(ServerWorld world, BiConsumer<String, Boolean> logger)
+    {
+        final Set<String> failedTestNames = new HashSet<>(TestFiles.readLines(FAILED_TESTS_FILE));
+        logger.accept("Found " + failedTestNames.size() + " failed test(s) from the previous run.", true);
+        setupTests(world, logger, test -> failedTestNames.contains(test.getName()));
+    }
+
+    private void setupTests(ServerWorld world, BiConsumer<String, Boolean> logger, Predicate<IntegrationTestRunner> filter)
     {
         if (status == Status.VERIFIED || status == Status.FINISHED || status == Status.SETUP)
         {
@@ -275,89 +666,79 @@ public enum IntegrationTestManager
 
             passedTests = failedTests = 0;
             activeTests.clear();
+            pendingSetup.clear();
+            results.clear();
+            updateCounts.clear();
+            abortedTests.clear();
+            plots.clear();
             currentTick = 0;
+            restoredPlots = builtPlots = restoredPositions = removedEntities = 0;
+            setupLogger = logger;
 
-            int testFloorY = 3;
+            previouslyFailedTests.clear();
+            previouslyFailedTests.addAll(TestFiles.readLines(FAILED_TESTS_FILE));
+            durations.load();
+
+            if (shardCount > 1)
+            {
+                final Set<IntegrationTestRunner> shard = getShard();
+                logger.accept("Running shard " + (shardIndex + 1) + " of " + shardCount + " with " + shard.size() + " test(s).", true);
+                filter = filter.and(shard::contains);
+            }
 
             final TemplateManager manager = world.getStructureManager();
-            final BlockPos.Mutable cursor = new BlockPos.Mutable(0, testFloorY, 0);
-            final BlockPos.Mutable mutablePos = new BlockPos.Mutable();
-            final Random random = new Random();
-            final PlacementSettings settings = new PlacementSettings().setRandom(random);
+            final BlockPos.Mutable cursor = new BlockPos.Mutable(0, TEST_FLOOR_Y, 0);
+            final List<PlotSetup> plotSetups = new ArrayList<>();
 
             int maxZSize = 0;
+            final Map<Integer, Integer> refreshIntervalCounts = new HashMap<>(); // Used to spread out tests which share a refresh interval
 
+            // Lay out all plots first. They are built afterwards, possibly over several ticks
             for (Map.Entry<String, List<IntegrationTestRunner>> entry : sortedTests.entrySet())
             {
                 for (IntegrationTestRunner test : entry.getValue())
                 {
                     final Template template = manager.getOrCreate(test.getTemplateName());
                     final BlockPos size = template.getSize();
-                    final BlockPos testBoxOrigin = cursor.immutable();
-                    final BlockPos testTemplateOrigin = testBoxOrigin.offset(1, 1, 1);
+                    final int copies = getRepeat(test);
+                    final boolean selected = filter.test(test);
 
-                    // Clear the test area
-                    for (int x = testBoxOrigin.getX(); x <= testBoxOrigin.getX() + size.getX() + 1; x++)
+                    for (int copy = 0; copy < copies; copy++)
                     {
-                        for (int z = testBoxOrigin.getZ(); z <= testBoxOrigin.getZ() + size.getZ() + 1; z++)
-                        {
-                            mutablePos.set(x, testFloorY, z);
-
-                            // Build a floor with a fancy construction-tape border
-                            if (x == testBoxOrigin.getX() || x == testBoxOrigin.getX() + size.getX() + 1 || z == testBoxOrigin.getZ() || z == testBoxOrigin.getZ() + size.getZ() + 1)
-                            {
-                                // Border
-                                world.setBlockAndUpdate(mutablePos, ((x + z) & 1) == 0 ? Blocks.YELLOW_CONCRETE.defaultBlockState() : Blocks.BLACK_CONCRETE.defaultBlockState());
-                            }
-                            else
-                            {
-                                world.setBlockAndUpdate(mutablePos, Blocks.GRAY_CONCRETE.defaultBlockState());
-                            }
-
-                            // Clear the area of the test
-                            for (int y = testTemplateOrigin.getY(); y <= testTemplateOrigin.getY() + size.getY() + 1; y++)
-                            {
-                                mutablePos.set(x, y, z);
-                                world.setBlockAndUpdate(mutablePos, Blocks.AIR.defaultBlockState());
-                            }
-                        }
-                    }
+                        final BlockPos testBoxOrigin = cursor.immutable();
+                        final BlockPos testTemplateOrigin = testBoxOrigin.offset(1, 1, 1);
 
-                    // Build the indicator beacon
-                    for (int x = testBoxOrigin.getX() - 1; x <= testBoxOrigin.getX() + 1; x++)
-                    {
-                        for (int z = testBoxOrigin.getZ() - 1; z <= testBoxOrigin.getZ() + 1; z++)
+                        // Move the cursor
+                        cursor.move(Direction.EAST, size.getX() + 2 + 3); // +x
+                        maxZSize = Math.max(maxZSize, size.getZ());
+
+                        if (!selected)
                         {
-                            mutablePos.set(x, testFloorY - 2, z);
-                            world.setBlockAndUpdate(mutablePos, Blocks.IRON_BLOCK.defaultBlockState());
+                            // Skipped tests still occupy their plot, so the layout does not depend on which tests are selected
+                            continue;
                         }
-                    }
-                    world.setBlockAndUpdate(mutablePos.setWithOffset(testBoxOrigin, Direction.DOWN), Blocks.BEACON.defaultBlockState());
-                    world.setBlockAndUpdate(mutablePos.set(testBoxOrigin), Blocks.LIGHT_GRAY_STAINED_GLASS.defaultBlockState());
-
-                    // Add the lectern with log book
-                    world.setBlockAndUpdate(mutablePos.setWithOffset(testBoxOrigin, -1, 1, -1), Blocks.LECTERN.defaultBlockState());
-                    ItemStack book = new ItemStack(Items.WRITABLE_BOOK);
-                    editLogBook(book, test.getName(), "Setup", Collections.emptyList());
-                    LecternBlock.tryPlaceBook(world, mutablePos, world.getBlockState(mutablePos), book);
-
-                    // Build the test itself
-                    template.placeInWorld(world, testTemplateOrigin, settings, random);
 
-                    // Move the cursor
-                    cursor.move(Direction.EAST, size.getX() + 2 + 3); // +x
-                    maxZSize = Math.max(maxZSize, size.getZ());
-
-                    // Begin test
-                    final IntegrationTestHelper helper = new IntegrationTestHelper(world, test, testTemplateOrigin, size);
-                    activeTests.add(helper);
+                        final String name = copies > 1 ? test.getName() + " #" + (copy + 1) : test.getName();
+                        final int refreshPhase = (refreshIntervalCounts.merge(test.getRefreshTicks(), 1, Integer::sum) - 1) % test.getRefreshTicks();
+                        final IntegrationTestHelper helper = new IntegrationTestHelper(world, test, name, testTemplateOrigin, size, refreshPhase, adaptiveRefresh || test.isAdaptiveRefresh(), players);
+                        plots.add(helper.getEntityBounds(), helper);
+                        plotSetups.add(new PlotSetup(helper, template, testBoxOrigin));
+                    }
                 }
 
                 // Move the cursor to the next row
                 cursor.setX(0);
                 cursor.move(Direction.SOUTH, maxZSize + 2 + 3); // +z
             }
-            logger.accept("Setup Finished!", true);
+
+            releasePlotChunks(world, plotSetups);
+
+            // Tests which failed in the previous run are set up, and so run, first, so a regression is found as early as possible
+            // Otherwise, the longest tests are set up first, so with a setup budget, the run is not held up waiting for a long test which started last
+            plotSetups.sort(Comparator.<PlotSetup, Boolean>comparing(plotSetup -> !previouslyFailedTests.contains(plotSetup.helper.getTest().getName()))
+                .thenComparingInt(plotSetup -> -durations.estimate(plotSetup.helper.getTest())));
+            pendingSetup.addAll(plotSetups);
+            setupPendingPlots(world);
         }
         else
         {
@@ -365,28 +746,266 @@ public enum IntegrationTestManager
         }
     }
 
+    /**
+     * Releases chunks which were forced by a previous setup, and no longer contain a test.
+     * Chunks containing the new plots are forced as each plot is set up, so loading them is spread out along with the setup itself.
+     */
+    private void releasePlotChunks(ServerWorld world, List<PlotSetup> plotSetups)
+    {
+        final LongSet chunks = new LongOpenHashSet();
+        for (PlotSetup plotSetup : plotSetups)
+        {
+            addPlotChunks(plotSetup.helper, chunks);
+        }
+
+        for (LongIterator iterator = forcedChunks.iterator(); iterator.hasNext(); )
+        {
+            final long chunk = iterator.nextLong();
+            if (!chunks.contains(chunk))
+            {
+                world.setChunkForced(ChunkPos.getX(chunk), ChunkPos.getZ(chunk), false);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Forces the chunks containing a test plot to stay loaded and ticking, so tests do not depend on being inside the spawn chunks.
+     */
+    private void forcePlotChunks(ServerWorld world, IntegrationTestHelper helper)
+    {
+        final LongSet chunks = new LongOpenHashSet();
+        addPlotChunks(helper, chunks);
+        for (LongIterator iterator = chunks.iterator(); iterator.hasNext(); )
+        {
+            final long chunk = iterator.nextLong();
+            if (forcedChunks.add(chunk))
+            {
+                world.setChunkForced(ChunkPos.getX(chunk), ChunkPos.getZ(chunk), true);
+            }
+        }
+    }
+
+    private void addPlotChunks(IntegrationTestHelper helper, LongSet chunks)
+    {
+        final AxisAlignedBB bounds = helper.getEntityBounds();
+        for (int x = ((int) Math.floor(bounds.minX)) >> 4; x <= ((int) Math.floor(bounds.maxX)) >> 4; x++)
+        {
+            for (int z = ((int) Math.floor(bounds.minZ)) >> 4; z <= ((int) Math.floor(bounds.maxZ)) >> 4; z++)
+            {
+                chunks.add(ChunkPos.asLong(x, z));
+            }
+        }
+    }
+
+    /**
+     * Assigns tests to shards. This never depends on the duration history of this process, which differs between shards, so each process computes the same assignment, and every test runs in exactly one shard.
+     * With a shared duration history, the longest remaining test is greedily placed in the shard with the least estimated total duration. Otherwise, tests sorted by name are dealt out in turn.
+     * Within a shard, the local duration history is used to set up the longest tests first.
+     *
+     * @return The tests in the current shard
+     */
+    private Set<IntegrationTestRunner> getShard()
+    {
+        final List<IntegrationTestRunner> tests = new ArrayList<>(allTests);
+        tests.sort(Comparator.comparing(IntegrationTestRunner::getName));
+
+        final Set<IntegrationTestRunner> shard = new HashSet<>();
+        if (shardDurations == null)
+        {
+            for (int i = shardIndex; i < tests.size(); i += shardCount)
+            {
+                shard.add(tests.get(i));
+            }
+            return shard;
+        }
+
+        shardDurations.load();
+        tests.sort(Comparator.comparingLong(test -> -getShardCost(test))); // Stable, so tests with the same cost stay in name order
+        final long[] shardCosts = new long[shardCount];
+        for (IntegrationTestRunner test : tests)
+        {
+            int minShard = 0;
+            for (int i = 1; i < shardCount; i++)
+            {
+                if (shardCosts[i] < shardCosts[minShard])
+                {
+                    minShard = i;
+                }
+            }
+            shardCosts[minShard] += getShardCost(test);
+            if (minShard == shardIndex)
+            {
+                shard.add(test);
+            }
+        }
+        return shard;
+    }
+
+    private long getShardCost(IntegrationTestRunner test)
+    {
+        return (long) Objects.requireNonNull(shardDurations).estimate(test) * getRepeat(test);
+    }
+
+    /**
+     * Builds plots which are waiting to be set up, until all are built, or the setup budget for this tick is used.
+     * If tests are already running, tests are started as soon as their plot is built.
+     */
+    private void setupPendingPlots(ServerWorld world)
+    {
+        final long startTime = System.nanoTime();
+        while (!pendingSetup.isEmpty())
+        {
+            setupPlot(world, pendingSetup.poll());
+            if (setupBudget > 0 && System.nanoTime() - startTime >= setupBudget)
+            {
+                break;
+            }
+        }
+
+        if (pendingSetup.isEmpty() && setupLogger != null)
+        {
+            if (restoredPositions > 0)
+            {
+                LOGGER.debug("Restored {} plot(s) and built {} plot(s) from snapshots, changing {} position(s)", restoredPlots, builtPlots, restoredPositions);
+            }
+            if (removedEntities > 0)
+            {
+                LOGGER.debug("Removed {} entities left in test plots", removedEntities);
+            }
+            setupLogger.accept("Setup Finished!", true);
+            setupLogger = null;
+        }
+    }
+
+    private void setupPlot(ServerWorld world, PlotSetup plotSetup)
+    {
+        final IntegrationTestHelper helper = plotSetup.helper;
+        final Template template = plotSetup.template;
+        final BlockPos size = template.getSize();
+        final BlockPos testBoxOrigin = plotSetup.testBoxOrigin;
+        final BlockPos testTemplateOrigin = helper.getOrigin();
+        final BlockPos.Mutable mutablePos = new BlockPos.Mutable();
+        final TestEvents.Span event = TestEvents.integrationTestSetup(helper);
+
+        // The plot is the area above the floor which is cleared, and then contains the test
+        final BlockPos plotOrigin = testBoxOrigin.above();
+        final BlockPos plotSize = size.offset(2, 2, 2);
+
+        PlotSnapshot snapshot = snapshots.get(helper.getTest().getTemplateName());
+        if (snapshot != null && !snapshot.matches(template))
+        {
+            snapshot = null; // The template has been reloaded since
+        }
+
+        forcePlotChunks(world, helper);
+
+        // Remove entities left over from a previous run
+        removedEntities += removeEntities(world, helper.getEntityBounds());
+
+        if (snapshot == null)
+        {
+            // Clear the test area
+            buildFloor(world, testBoxOrigin, size, TEST_FLOOR_Y);
+            for (int x = testBoxOrigin.getX(); x <= testBoxOrigin.getX() + size.getX() + 1; x++)
+            {
+                for (int z = testBoxOrigin.getZ(); z <= testBoxOrigin.getZ() + size.getZ() + 1; z++)
+                {
+                    for (int y = testTemplateOrigin.getY(); y <= testTemplateOrigin.getY() + size.getY() + 1; y++)
+                    {
+                        mutablePos.set(x, y, z);
+                        world.setBlockAndUpdate(mutablePos, Blocks.AIR.defaultBlockState());
+                    }
+                }
+            }
+        }
+        else
+        {
+            if (placedPlots.get(plotOrigin) != snapshot)
+            {
+                // A new plot, which is built by copying the snapshot directly into chunks, rather than placing the template again
+                buildFloor(world, testBoxOrigin, size, TEST_FLOOR_Y);
+                restoredPositions += snapshot.stamp(world, plotOrigin);
+                builtPlots++;
+            }
+            else
+            {
+                // Restoring only changes, and updates, what the previous run changed. The floor is not part of the snapshot, so it is repaired separately
+                buildFloor(world, testBoxOrigin, size, TEST_FLOOR_Y);
+                restoredPositions += snapshot.restore(world, plotOrigin);
+                restoredPlots++;
+            }
+        }
+
+        // Build the indicator beacon
+        for (int x = testBoxOrigin.getX() - 1; x <= testBoxOrigin.getX() + 1; x++)
+        {
+            for (int z = testBoxOrigin.getZ() - 1; z <= testBoxOrigin.getZ() + 1; z++)
+            {
+                mutablePos.set(x, TEST_FLOOR_Y - 2, z);
+                world.setBlockAndUpdate(mutablePos, Blocks.IRON_BLOCK.defaultBlockState());
+            }
+        }
+        world.setBlockAndUpdate(mutablePos.setWithOffset(testBoxOrigin, Direction.DOWN), Blocks.BEACON.defaultBlockState());
+        world.setBlockAndUpdate(mutablePos.set(testBoxOrigin), Blocks.LIGHT_GRAY_STAINED_GLASS.defaultBlockState());
+
+        // Add the lectern with log book
+        world.setBlockAndUpdate(mutablePos.setWithOffset(testBoxOrigin, -1, 1, -1), Blocks.LECTERN.defaultBlockState());
+        ItemStack book = new ItemStack(Items.WRITABLE_BOOK);
+        editLogBook(book, helper.getName(), "Setup", Collections.emptyList());
+        LecternBlock.tryPlaceBook(world, mutablePos, world.getBlockState(mutablePos), book);
+
+        if (snapshot == null)
+        {
+            // Build the test itself, and capture it so it can be restored by the next setup, or used to build other plots with the same template
+            final Random random = new Random();
+            template.placeInWorld(world, testTemplateOrigin, new PlacementSettings().setRandom(random), random);
+            snapshot = PlotSnapshot.capture(world, template, plotOrigin, plotSize);
+            snapshots.put(helper.getTest().getTemplateName(), snapshot);
+        }
+        placedPlots.put(plotOrigin, snapshot);
+
+        if (traceCapacity > 0)
+        {
+            helper.startTrace(traceCapacity);
+            TestFiles.delete(traceFile(helper.getName())); // Remove the trace from a previous failure, so it is not mistaken for this run
+        }
+        if (countUpdates)
+        {
+            helper.startCountingUpdates();
+        }
+        event.commit();
+
+        // Begin test, immediately if tests are already running
+        activeTests.add(helper);
+        if (status == Status.RUNNING)
+        {
+            startTest(world, helper);
+        }
+    }
+
     public void runAllTests(ServerWorld world, BiConsumer<String, Boolean> logger)
     {
         if (status == Status.SETUP)
         {
-            if (activeTests.isEmpty())
+            if (activeTests.isEmpty() && pendingSetup.isEmpty())
             {
                 logger.accept("No tests found.", true);
                 status = Status.FINISHED;
             }
             else
             {
-                for (IntegrationTestHelper activeTest : activeTests)
+                if (quietWorld)
                 {
-                    // Run tests and setup conditions
-                    activeTest.run();
+                    // Random ticks apply to the entire world, so they are enabled if any test requires them
+                    final boolean randomTicks = Stream.concat(activeTests.stream(), pendingSetup.stream().map(plotSetup -> plotSetup.helper)).anyMatch(helper -> helper.getTest().hasRandomTicks());
+                    world.getGameRules().getRule(GameRules.RULE_RANDOMTICKING).tryDeserialize(randomTicks ? DEFAULT_RANDOM_TICK_SPEED : "0");
+                }
 
-                    // Update the log book
-                    TileEntity te = world.getBlockEntity(activeTest.getOrigin().offset(-2, 0, -2));
-                    if (te instanceof LecternTileEntity)
-                    {
-                        editLogBook(((LecternTileEntity) te).getBook(), activeTest.getTest().getName(), "Running", Collections.emptyList());
-                    }
+                // Tests whose plots are still being set up are started once they are ready
+                for (IntegrationTestHelper activeTest : activeTests)
+                {
+                    startTest(world, activeTest);
                 }
                 status = Status.RUNNING;
                 logger.accept("Running Tests...", true);
@@ -398,63 +1017,413 @@ public enum IntegrationTestManager
         }
     }
 
-    public void tick(ServerWorld world)
+    /**
+     * Called before the world ticks, to count the scheduled ticks and block entity ticks which are about to run in each test area.
+     */
+    public void beforeTick(ServerWorld world)
     {
-        if (!activeTests.isEmpty() && status == Status.RUNNING)
+        if (countUpdates && status == Status.RUNNING)
         {
-            currentTick++;
-            Iterator<IntegrationTestHelper> iterator = activeTests.iterator();
-            while (iterator.hasNext())
+            final long dueTick = world.getGameTime() + 1; // The world advances the game time before running scheduled ticks
+            for (int i = 0; i < activeTests.size(); i++)
+            {
+                activeTests.get(i).countScheduledTicks(dueTick);
+            }
+            for (TileEntity te : world.tickableBlockEntities)
             {
-                IntegrationTestHelper helper = iterator.next();
-                helper.tick(currentTick).ifPresent(result -> {
-                    BlockState glass;
-                    if (result.isSuccess())
+                if (!te.isRemoved())
+                {
+                    final BlockPos pos = te.getBlockPos();
+                    final IntegrationTestHelper helper = plots.get(pos.getX() + 0.5, pos.getY() + 0.5, pos.getZ() + 0.5);
+                    if (helper != null)
                     {
-                        glass = Blocks.GREEN_STAINED_GLASS.defaultBlockState();
-                        passedTests++;
+                        helper.countUpdate(UpdateCounter.BLOCK_ENTITY_TICKS, 1);
                     }
-                    else
-                    {
-                        glass = Blocks.RED_STAINED_GLASS.defaultBlockState();
-                        failedTests++;
+                }
+            }
+        }
+    }
 
-                        // Send failure messages!
-                        if (!result.getErrors().isEmpty())
-                        {
-                            LOGGER.log(UNIT_TEST, "Test Failed {}", helper.getTest().getName());
-                            for (String error : result.getErrors())
-                            {
-                                LOGGER.log(UNIT_TEST, error);
-                            }
-                        }
-                    }
+    public void tick(ServerWorld world)
+    {
+        final IProfiler profiler = world.getProfiler();
+        profiler.push("integrationTests");
+        if (!pendingSetup.isEmpty() && (status == Status.SETUP || status == Status.RUNNING))
+        {
+            profiler.push("setup");
+            setupPendingPlots(world);
+            profiler.pop();
+        }
 
-                    // Update the beacon state
-                    world.setBlockAndUpdate(helper.getOrigin().offset(-1, -1, -1), glass);
+        final Stall stall = pendingStall;
+        if (stall != null && status == Status.RUNNING)
+        {
+            failStalledTest(world, stall);
+        }
 
-                    // Update the log book
-                    TileEntity te = world.getBlockEntity(helper.getOrigin().offset(-2, 0, -2));
-                    if (te instanceof LecternTileEntity && ((LecternTileEntity) te).hasBook())
-                    {
-                        String status = result.isSuccess() ? "Pass" : "Fail";
-                        editLogBook(((LecternTileEntity) te).getBook(), helper.getTest().getName(), status, result.getErrors());
-                    }
+        if (status == Status.RUNNING)
+        {
+            currentTick++;
+            final int activeBefore = activeTests.size();
+            final long allocatedBefore = allocationCounter.get();
 
-                    iterator.remove();
-                });
+            // Index based, as this runs every tick, for every active test, and should not allocate unless a test completes
+            for (int i = 0; i < activeTests.size() && !(failFast && failedTests > 0); )
+            {
+                final IntegrationTestHelper helper = activeTests.get(i);
+                executingTest = helper;
+                profiler.push(helper.getName());
+                final int result = helper.tick(currentTick);
+                profiler.pop();
+                executingTest = null;
+                helper.endUpdateTick();
+                if (result != IntegrationTestHelper.RUNNING)
+                {
+                    completeTest(world, helper, helper.getResult(currentTick));
+                    activeTests.remove(i);
+                }
+                else
+                {
+                    i++;
+                }
             }
 
-            if (activeTests.isEmpty())
+            allocationCounter.record(allocatedBefore, activeTests.size() == activeBefore);
+
+            if (failFast && failedTests > 0 && !(activeTests.isEmpty() && pendingSetup.isEmpty()))
             {
-                int totalTests = passedTests + failedTests;
-                LOGGER.log(UNIT_TEST, "Integration Testing Complete!");
-                LOGGER.log(UNIT_TEST, "Passed: {} / {} ({} %)", passedTests, totalTests, String.format("%.1f", 100f * passedTests / totalTests));
-                LOGGER.log(UNIT_TEST, "Failed: {} / {} ({} %)", failedTests, totalTests, String.format("%.1f", 100f * failedTests / totalTests));
+                abortRemainingTests(world);
+            }
 
-                status = Status.FINISHED;
+            if (activeTests.isEmpty() && pendingSetup.isEmpty())
+            {
+                finishTests(world);
             }
         }
+        profiler.pop();
+    }
+
+    /**
+     * Runs a test method, which sets up its actions and conditions. The test is then ticked from the next tick.
+     */
+    private void startTest(ServerWorld world, IntegrationTestHelper helper)
+    {
+        // Run tests and setup conditions
+        executingTest = helper;
+        helper.run(currentTick);
+        executingTest = null;
+
+        // Update the log book
+        TileEntity te = world.getBlockEntity(helper.getOrigin().offset(-2, 0, -2));
+        if (te instanceof LecternTileEntity)
+        {
+            editLogBook(((LecternTileEntity) te).getBook(), helper.getName(), "Running", Collections.emptyList());
+        }
+    }
+
+    private int getRepeat(IntegrationTestRunner test)
+    {
+        return test.getRepeat() == -1 ? repeat : test.getRepeat();
+    }
+
+    private String traceFile(String testName)
+    {
+        return TRACES_DIRECTORY + testName.replaceAll("[^A-Za-z0-9._-]", "_") + ".txt";
+    }
+
+    private int removeEntities(ServerWorld world, AxisAlignedBB area)
+    {
+        final List<Entity> entities = IntegrationTestHelper.getTestEntities(world, area);
+        for (Entity entity : entities)
+        {
+            entity.remove();
+        }
+        return entities.size();
+    }
+
+    private void buildFloor(ServerWorld world, BlockPos testBoxOrigin, BlockPos size, int testFloorY)
+    {
+        final BlockPos.Mutable mutablePos = new BlockPos.Mutable();
+        for (int x = testBoxOrigin.getX(); x <= testBoxOrigin.getX() + size.getX() + 1; x++)
+        {
+            for (int z = testBoxOrigin.getZ(); z <= testBoxOrigin.getZ() + size.getZ() + 1; z++)
+            {
+                mutablePos.set(x, testFloorY, z);
+
+                // Build a floor with a fancy construction-tape border
+                final BlockState state;
+                if (x == testBoxOrigin.getX() || x == testBoxOrigin.getX() + size.getX() + 1 || z == testBoxOrigin.getZ() || z == testBoxOrigin.getZ() + size.getZ() + 1)
+                {
+                    // Border
+                    state = ((x + z) & 1) == 0 ? Blocks.YELLOW_CONCRETE.defaultBlockState() : Blocks.BLACK_CONCRETE.defaultBlockState();
+                }
+                else
+                {
+                    state = Blocks.GRAY_CONCRETE.defaultBlockState();
+                }
+
+                // Only positions which differ are changed, so an intact floor is not updated again
+                if (world.getBlockState(mutablePos) != state)
+                {
+                    world.setBlockAndUpdate(mutablePos, state);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the result of a test, and updates the beacon and log book.
+     */
+    private void completeTest(ServerWorld world, IntegrationTestHelper helper, TestResult result)
+    {
+        recordResult(helper, result);
+        helper.releasePlayer();
+
+        // Remove any entities the test spawned, so they do not keep ticking
+        removeEntities(world, helper.getEntityBounds());
+
+        // Update the beacon state
+        world.setBlockAndUpdate(helper.getOrigin().offset(-1, -1, -1), result.isSuccess() ? Blocks.GREEN_STAINED_GLASS.defaultBlockState() : Blocks.RED_STAINED_GLASS.defaultBlockState());
+
+        // Update the log book
+        TileEntity te = world.getBlockEntity(helper.getOrigin().offset(-2, 0, -2));
+        if (te instanceof LecternTileEntity && ((LecternTileEntity) te).hasBook())
+        {
+            String status = result.isSuccess() ? "Pass" : "Fail";
+            editLogBook(((LecternTileEntity) te).getBook(), helper.getName(), status, result.getErrors());
+        }
+    }
+
+    /**
+     * Records the result of a single copy of a test.
+     * A test is counted as failed as soon as any copy fails, and as passed once every copy has passed.
+     */
+    private void recordResult(IntegrationTestHelper helper, TestResult result)
+    {
+        final IntegrationTestRunner test = helper.getTest();
+        helper.commitTestEvent(result.isSuccess() ? "passed" : "failed");
+        final UpdateCounter updates = helper.stopCountingUpdates();
+        if (updates != null)
+        {
+            updateCounts.merge(test, updates, UpdateCounter::merge);
+        }
+        final List<TestResult> testResults = results.computeIfAbsent(test, key -> new ArrayList<>());
+        final boolean alreadyFailed = testResults.stream().anyMatch(r -> !r.isSuccess());
+        final int copies = getRepeat(test);
+
+        testResults.add(result);
+        if (!result.isSuccess())
+        {
+            if (!alreadyFailed)
+            {
+                failedTests++;
+            }
+
+            // Send failure messages!
+            if (!result.getErrors().isEmpty())
+            {
+                LOGGER.log(UNIT_TEST, "Test Failed {}", helper.getName());
+                for (String error : result.getErrors())
+                {
+                    LOGGER.log(UNIT_TEST, error);
+                }
+            }
+
+            final BlockChangeTrace trace = helper.stopTrace();
+            if (trace != null)
+            {
+                final String file = traceFile(helper.getName());
+                TestFiles.writeLines(file, trace.toLines());
+                LOGGER.log(UNIT_TEST, "Block changes for {} written to {}", helper.getName(), TestFiles.resolve(file));
+            }
+        }
+        else
+        {
+            // Traces are only kept for failed tests
+            helper.stopTrace();
+            if (!alreadyFailed && testResults.size() == copies)
+            {
+                passedTests++;
+            }
+        }
+
+        if (copies > 1 && testResults.size() == copies)
+        {
+            final IntSummaryStatistics ticksToPass = testResults.stream().filter(TestResult::isSuccess).mapToInt(TestResult::getTicks).summaryStatistics();
+            if (ticksToPass.getCount() > 0)
+            {
+                LOGGER.log(UNIT_TEST, "Test {}: {} of {} passed (ticks to pass: min {}, mean {}, max {})", test.getName(), ticksToPass.getCount(), copies, ticksToPass.getMin(), String.format("%.1f", ticksToPass.getAverage()), ticksToPass.getMax());
+            }
+            else
+            {
+                LOGGER.log(UNIT_TEST, "Test {}: 0 of {} passed", test.getName(), copies);
+            }
+        }
+    }
+
+    private void finishTests(ServerWorld world)
+    {
+        if (quietWorld)
+        {
+            // Random ticks may have been enabled for tests which require them, so restore the quiet world for any later runs
+            world.getGameRules().getRule(GameRules.RULE_RANDOMTICKING).tryDeserialize("0");
+        }
+
+        final int abortedCount = (int) abortedTests.stream().filter(test -> getStatus(test, results) == TestStatus.ABORTED).count();
+        final int totalTests = passedTests + failedTests + abortedCount;
+        LOGGER.log(UNIT_TEST, "Integration Testing Complete!");
+        LOGGER.log(UNIT_TEST, "Passed: {} / {} ({} %)", passedTests, totalTests, String.format("%.1f", 100f * passedTests / totalTests));
+        LOGGER.log(UNIT_TEST, "Failed: {} / {} ({} %)", failedTests, totalTests, String.format("%.1f", 100f * failedTests / totalTests));
+        if (abortedCount > 0)
+        {
+            LOGGER.log(UNIT_TEST, "Aborted: {} / {} ({} %)", abortedCount, totalTests, String.format("%.1f", 100f * abortedCount / totalTests));
+        }
+        if (allocationCounter.isEnabled())
+        {
+            LOGGER.log(UNIT_TEST, "Tick allocations: {}", allocationCounter.summary());
+        }
+        if (!updateCounts.isEmpty())
+        {
+            LOGGER.log(UNIT_TEST, "Updates by test, most first:");
+            updateCounts.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<IntegrationTestRunner, UpdateCounter> entry) -> entry.getValue().getTotal()).reversed())
+                .forEach(entry -> LOGGER.log(UNIT_TEST, "{}: {}", entry.getKey().getName(), entry.getValue().summary()));
+        }
+
+        writeResults(results, abortedTests, passedTests, failedTests, abortedCount);
+        status = Status.FINISHED;
+    }
+
+    /**
+     * Fails the test which was executing when the server thread stalled (if it has not completed since), aborts all others, and writes results.
+     */
+    private void failStalledTest(ServerWorld world, Stall stall)
+    {
+        final IntegrationTestHelper helper = stall.helper;
+        if (helper != null && activeTests.remove(helper))
+        {
+            completeTest(world, helper, new TestResult(stall.errors, false, helper.getTestTick(stall.tick), helper.getTestMillis()));
+        }
+        abortRemainingTests(world);
+        finishTests(world);
+    }
+
+    private void abortRemainingTests(ServerWorld world)
+    {
+        LOGGER.log(UNIT_TEST, "Aborting {} remaining test(s)", activeTests.size() + pendingSetup.size());
+        for (IntegrationTestHelper helper : activeTests)
+        {
+            abortedTests.add(helper.getTest());
+            helper.commitTestEvent("aborted");
+            helper.releasePlayer();
+
+            // Update the log book
+            TileEntity te = world.getBlockEntity(helper.getOrigin().offset(-2, 0, -2));
+            if (te instanceof LecternTileEntity && ((LecternTileEntity) te).hasBook())
+            {
+                editLogBook(((LecternTileEntity) te).getBook(), helper.getName(), "Aborted", Collections.emptyList());
+            }
+        }
+        for (PlotSetup plotSetup : pendingSetup)
+        {
+            abortedTests.add(plotSetup.helper.getTest());
+        }
+        activeTests.clear();
+        pendingSetup.clear();
+    }
+
+    private TestStatus getStatus(IntegrationTestRunner test, Map<IntegrationTestRunner, List<TestResult>> results)
+    {
+        final List<TestResult> testResults = results.getOrDefault(test, Collections.emptyList());
+        if (testResults.stream().anyMatch(result -> !result.isSuccess()))
+        {
+            return TestStatus.FAILED;
+        }
+        return testResults.size() == getRepeat(test) ? TestStatus.PASSED : TestStatus.ABORTED;
+    }
+
+    private void writeResults(Map<IntegrationTestRunner, List<TestResult>> results, Set<IntegrationTestRunner> abortedTests, int passedTests, int failedTests, int abortedCount)
+    {
+        final Set<String> failedTestNames = new LinkedHashSet<>();
+        final Set<String> passedTestNames = new HashSet<>();
+        final JsonArray testsJson = new JsonArray();
+        final Set<IntegrationTestRunner> completedTests = new LinkedHashSet<>(results.keySet());
+        completedTests.addAll(abortedTests);
+        for (IntegrationTestRunner test : completedTests)
+        {
+            final TestStatus testStatus = getStatus(test, results);
+            if (testStatus == TestStatus.PASSED)
+            {
+                passedTestNames.add(test.getName());
+            }
+            else if (testStatus == TestStatus.FAILED)
+            {
+                failedTestNames.add(test.getName());
+            }
+
+            final List<TestResult> testResults = results.getOrDefault(test, Collections.emptyList());
+            final JsonArray errorsJson = new JsonArray();
+            final JsonArray ticksJson = new JsonArray();
+            final JsonArray millisJson = new JsonArray();
+            int maxTicks = 0;
+            long maxMillis = 0;
+            for (TestResult result : testResults)
+            {
+                result.getErrors().forEach(errorsJson::add);
+                ticksJson.add(result.getTicks());
+                millisJson.add(result.getMillis());
+                maxTicks = Math.max(maxTicks, result.getTicks());
+                maxMillis = Math.max(maxMillis, result.getMillis());
+            }
+            if (!testResults.isEmpty())
+            {
+                // Copies of a test run in parallel, so the slowest copy is how long the test took
+                durations.record(test, maxTicks, maxMillis);
+            }
+
+            final JsonObject testJson = new JsonObject();
+            testJson.addProperty("name", test.getName());
+            testJson.addProperty("template", test.getTemplateName().toString());
+            testJson.addProperty("status", testStatus.name().toLowerCase(Locale.ROOT));
+            if (getRepeat(test) > 1)
+            {
+                testJson.addProperty("copies", getRepeat(test));
+                testJson.addProperty("passedCopies", testResults.stream().filter(TestResult::isSuccess).count());
+            }
+            testJson.add("ticks", ticksJson);
+            testJson.add("millis", millisJson);
+            if (updateCounts.containsKey(test))
+            {
+                testJson.add("updates", updateCounts.get(test).toJson());
+            }
+            testJson.add("errors", errorsJson);
+            testsJson.add(testJson);
+        }
+
+        // Tests which did not complete in this run (either aborted, or not selected) keep the state they had in the previous run
+        // Tests which are no longer registered (renamed or removed) are dropped
+        final Set<String> registeredTestNames = new HashSet<>();
+        for (IntegrationTestRunner test : allTests)
+        {
+            registeredTestNames.add(test.getName());
+        }
+        for (String testName : previouslyFailedTests)
+        {
+            if (registeredTestNames.contains(testName) && !passedTestNames.contains(testName))
+            {
+                failedTestNames.add(testName);
+            }
+        }
+
+        final JsonObject reportJson = new JsonObject();
+        reportJson.addProperty("passed", passedTests);
+        reportJson.addProperty("failed", failedTests);
+        reportJson.addProperty("aborted", abortedCount);
+        reportJson.add("tests", testsJson);
+
+        TestFiles.writeJson(REPORT_FILE, reportJson);
+        TestFiles.writeLines(FAILED_TESTS_FILE, failedTestNames);
+        durations.save();
     }
 
     void add(IntegrationTestRunner test)
@@ -486,6 +1455,47 @@ public enum IntegrationTestManager
         stack.setTag(bookNbt);
     }
 
+    /**
+     * A plot which has been laid out, and is waiting to be built
+     */
+    private static final class PlotSetup
+    {
+        private final IntegrationTestHelper helper;
+        private final Template template;
+        private final BlockPos testBoxOrigin;
+
+        private PlotSetup(IntegrationTestHelper helper, Template template, BlockPos testBoxOrigin)
+        {
+            this.helper = helper;
+            this.template = template;
+            this.testBoxOrigin = testBoxOrigin;
+        }
+    }
+
+    /**
+     * A test which was executing when the server thread stalled
+     */
+    private static final class Stall
+    {
+        @Nullable private final IntegrationTestHelper helper;
+        private final List<String> errors;
+        private final int tick;
+
+        private Stall(@Nullable IntegrationTestHelper helper, List<String> errors, int tick)
+        {
+            this.helper = helper;
+            this.errors = errors;
+            this.tick = tick;
+        }
+    }
+
+    private enum TestStatus
+    {
+        PASSED,
+        FAILED,
+        ABORTED
+    }
+
     private enum Status
     {
         WAITING,
@@ -12,16 +12,24 @@ class IntegrationTestRunner
     private final ResourceLocation templateName;
 
     private final int refreshTicks;
+    private final boolean adaptiveRefresh;
     private final int timeoutTicks;
+    private final int repeat;
+    private final int maxEntities;
+    private final boolean randomTicks;
 
-    IntegrationTestRunner(Class<?> clazz, Consumer<IntegrationTestHelper> testAction, String testName, ResourceLocation templateName, int refreshTicks, int timeoutTicks)
+    IntegrationTestRunner(Class<?> clazz, Consumer<IntegrationTestHelper> testAction, String testName, ResourceLocation templateName, int refreshTicks, boolean adaptiveRefresh, int timeoutTicks, int repeat, int maxEntities, boolean randomTicks)
     {
         this.clazz = clazz;
         this.testAction = testAction;
         this.testName = testName;
         this.templateName = templateName;
         this.refreshTicks = refreshTicks;
+        this.adaptiveRefresh = adaptiveRefresh;
         this.timeoutTicks = timeoutTicks;
+        this.repeat = repeat;
+        this.maxEntities = maxEntities;
+        this.randomTicks = randomTicks;
     }
 
     String getName()
@@ -49,6 +57,26 @@ class IntegrationTestRunner
         return refreshTicks;
     }
 
+    boolean isAdaptiveRefresh()
+    {
+        return adaptiveRefresh;
+    }
+
+    int getRepeat()
+    {
+        return repeat;
+    }
+
+    int getMaxEntities()
+    {
+        return maxEntities;
+    }
+
+    boolean hasRandomTicks()
+    {
+        return randomTicks;
+    }
+
     Consumer<IntegrationTestHelper> getTestAction()
     {
         return testAction;
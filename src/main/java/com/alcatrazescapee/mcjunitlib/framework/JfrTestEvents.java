@@ -0,0 +1,196 @@
+package com.alcatrazescapee.mcjunitlib.framework;
+
+import jdk.jfr.*;
+
+/**
+ * The Flight Recorder events used by {@link TestEvents}. This is the only class which references Flight Recorder, and it is only loaded if Flight Recorder is available.
+ *
+ * Events which are not enabled are not created, and a shared span is returned instead, so a disabled event costs only the check, and does not allocate.
+ */
+final class JfrTestEvents
+{
+    private static final String CATEGORY = "MCJUnitLib";
+
+    // Event types, which are checked before an event is created, so a disabled event does not allocate
+    private static final EventType STARTUP_PHASE = EventType.getEventType(StartupPhaseEvent.class);
+    private static final EventType UNIT_TEST = EventType.getEventType(UnitTestEvent.class);
+    private static final EventType INTEGRATION_TEST_SETUP = EventType.getEventType(IntegrationTestSetupEvent.class);
+    private static final EventType INTEGRATION_TEST = EventType.getEventType(IntegrationTestEvent.class);
+    private static final EventType INTEGRATION_TEST_METHOD = EventType.getEventType(IntegrationTestMethodEvent.class);
+    private static final EventType INTEGRATION_TEST_ACTION = EventType.getEventType(IntegrationTestActionEvent.class);
+    private static final EventType INTEGRATION_TEST_ASSERTIONS = EventType.getEventType(IntegrationTestAssertionsEvent.class);
+
+    static boolean isAvailable()
+    {
+        return FlightRecorder.isAvailable();
+    }
+
+    static TestEvents.Span startupPhase(String phase)
+    {
+        if (STARTUP_PHASE.isEnabled())
+        {
+            final StartupPhaseEvent event = new StartupPhaseEvent();
+            event.phase = phase;
+            event.begin();
+            return event;
+        }
+        return TestEvents.Span.NONE;
+    }
+
+    static TestEvents.Span unitTest(String test)
+    {
+        if (UNIT_TEST.isEnabled())
+        {
+            final UnitTestEvent event = new UnitTestEvent();
+            event.test = test;
+            event.begin();
+            return event;
+        }
+        return TestEvents.Span.NONE;
+    }
+
+    static TestEvents.Span integrationTestSetup(IntegrationTestHelper helper)
+    {
+        if (INTEGRATION_TEST_SETUP.isEnabled())
+        {
+            final IntegrationTestSetupEvent event = new IntegrationTestSetupEvent();
+            event.test = helper.getName();
+            event.template = helper.getTemplateName();
+            event.begin();
+            return event;
+        }
+        return TestEvents.Span.NONE;
+    }
+
+    static TestEvents.Span integrationTest(IntegrationTestHelper helper)
+    {
+        if (INTEGRATION_TEST.isEnabled())
+        {
+            final IntegrationTestEvent event = new IntegrationTestEvent();
+            event.test = helper.getName();
+            event.template = helper.getTemplateName();
+            event.begin();
+            return event;
+        }
+        return TestEvents.Span.NONE;
+    }
+
+    static TestEvents.Span integrationTestMethod(IntegrationTestHelper helper)
+    {
+        if (INTEGRATION_TEST_METHOD.isEnabled())
+        {
+            final IntegrationTestMethodEvent event = new IntegrationTestMethodEvent();
+            event.test = helper.getName();
+            event.template = helper.getTemplateName();
+            event.begin();
+            return event;
+        }
+        return TestEvents.Span.NONE;
+    }
+
+    static TestEvents.Span integrationTestAction(IntegrationTestHelper helper, int tick)
+    {
+        if (INTEGRATION_TEST_ACTION.isEnabled())
+        {
+            final IntegrationTestActionEvent event = new IntegrationTestActionEvent();
+            event.test = helper.getName();
+            event.template = helper.getTemplateName();
+            event.tick = tick;
+            event.begin();
+            return event;
+        }
+        return TestEvents.Span.NONE;
+    }
+
+    static TestEvents.Span integrationTestAssertions(IntegrationTestHelper helper)
+    {
+        if (INTEGRATION_TEST_ASSERTIONS.isEnabled())
+        {
+            final IntegrationTestAssertionsEvent event = new IntegrationTestAssertionsEvent();
+            event.test = helper.getName();
+            event.template = helper.getTemplateName();
+            event.begin();
+            return event;
+        }
+        return TestEvents.Span.NONE;
+    }
+
+    @Name("mcjunitlib.StartupPhase")
+    @Label("Startup Phase")
+    @Category(CATEGORY)
+    static final class StartupPhaseEvent extends Event implements TestEvents.Span
+    {
+        @Label("Phase") String phase;
+    }
+
+    @Name("mcjunitlib.UnitTest")
+    @Label("Unit Test")
+    @Category(CATEGORY)
+    static final class UnitTestEvent extends Event implements TestEvents.Span
+    {
+        @Label("Test") String test;
+        @Label("Result") String result;
+
+        @Override
+        public void setResult(String result)
+        {
+            this.result = result;
+        }
+    }
+
+    @Name("mcjunitlib.IntegrationTestSetup")
+    @Label("Integration Test Setup")
+    @Category(CATEGORY)
+    static final class IntegrationTestSetupEvent extends Event implements TestEvents.Span
+    {
+        @Label("Test") String test;
+        @Label("Template") String template;
+    }
+
+    @Name("mcjunitlib.IntegrationTest")
+    @Label("Integration Test")
+    @Description("An integration test, from when it is started until it passes or fails")
+    @Category(CATEGORY)
+    static final class IntegrationTestEvent extends Event implements TestEvents.Span
+    {
+        @Label("Test") String test;
+        @Label("Template") String template;
+        @Label("Result") String result;
+
+        @Override
+        public void setResult(String result)
+        {
+            this.result = result;
+        }
+    }
+
+    @Name("mcjunitlib.IntegrationTestMethod")
+    @Label("Integration Test Method")
+    @Category(CATEGORY)
+    static final class IntegrationTestMethodEvent extends Event implements TestEvents.Span
+    {
+        @Label("Test") String test;
+        @Label("Template") String template;
+    }
+
+    @Name("mcjunitlib.IntegrationTestAction")
+    @Label("Integration Test Action")
+    @Category(CATEGORY)
+    static final class IntegrationTestActionEvent extends Event implements TestEvents.Span
+    {
+        @Label("Test") String test;
+        @Label("Template") String template;
+        @Label("Scheduled Tick") int tick;
+    }
+
+    @Name("mcjunitlib.IntegrationTestAssertions")
+    @Label("Integration Test Assertions")
+    @Category(CATEGORY)
+    static final class IntegrationTestAssertionsEvent extends Event implements TestEvents.Span
+    {
+        @Label("Test") String test;
+        @Label("Template") String template;
+    }
+
+    private JfrTestEvents() {}
+}
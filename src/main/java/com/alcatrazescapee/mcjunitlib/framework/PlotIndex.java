@@ -0,0 +1,91 @@
+package com.alcatrazescapee.mcjunitlib.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.ChunkPos;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * Finds the test plot containing a position, without checking every plot.
+ * Plots are indexed by each chunk they intersect. As plots never overlap, and are small compared to a chunk, each chunk only contains a handful of plots.
+ *
+ * @param <T> The value stored for each plot
+ */
+final class PlotIndex<T>
+{
+    private final Long2ObjectMap<List<Entry<T>>> plotsByChunk;
+
+    PlotIndex()
+    {
+        this.plotsByChunk = new Long2ObjectOpenHashMap<>();
+    }
+
+    void add(AxisAlignedBB bounds, T value)
+    {
+        final Entry<T> entry = new Entry<>(bounds, value);
+        final int minX = ((int) Math.floor(bounds.minX)) >> 4, maxX = ((int) Math.floor(bounds.maxX)) >> 4;
+        final int minZ = ((int) Math.floor(bounds.minZ)) >> 4, maxZ = ((int) Math.floor(bounds.maxZ)) >> 4;
+        for (int x = minX; x <= maxX; x++)
+        {
+            for (int z = minZ; z <= maxZ; z++)
+            {
+                final long key = ChunkPos.asLong(x, z);
+                List<Entry<T>> entries = plotsByChunk.get(key);
+                if (entries == null)
+                {
+                    entries = new ArrayList<>(1);
+                    plotsByChunk.put(key, entries);
+                }
+                entries.add(entry);
+            }
+        }
+    }
+
+    /**
+     * @return The value of the plot containing the position, or null if it is not inside any plot
+     */
+    @Nullable
+    T get(double x, double y, double z)
+    {
+        final List<Entry<T>> entries = plotsByChunk.get(ChunkPos.asLong(((int) Math.floor(x)) >> 4, ((int) Math.floor(z)) >> 4));
+        if (entries != null)
+        {
+            for (int i = 0; i < entries.size(); i++)
+            {
+                final Entry<T> entry = entries.get(i);
+                if (entry.bounds.contains(x, y, z))
+                {
+                    return entry.value;
+                }
+            }
+        }
+        return null;
+    }
+
+    boolean isEmpty()
+    {
+        return plotsByChunk.isEmpty();
+    }
+
+    void clear()
+    {
+        plotsByChunk.clear();
+    }
+
+    private static final class Entry<T>
+    {
+        private final AxisAlignedBB bounds;
+        private final T value;
+
+        private Entry(AxisAlignedBB bounds, T value)
+        {
+            this.bounds = bounds;
+            this.value = value;
+        }
+    }
+}
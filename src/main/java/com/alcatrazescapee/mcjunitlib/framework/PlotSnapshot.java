@@ -0,0 +1,316 @@
+package com.alcatrazescapee.mcjunitlib.framework;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.BitArray;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.gen.Heightmap;
+import net.minecraft.world.gen.feature.template.Template;
+import net.minecraft.world.server.ServerChunkProvider;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.common.util.Constants;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+/**
+ * A compact copy of the blocks, tile entities, and entities in a test plot, captured right after the test structure is placed.
+ * Blocks are stored as a palette and packed indices, the same as a chunk section. Positions are relative to the plot.
+ *
+ * Restoring a snapshot only touches the positions which have changed since it was captured, so resetting a plot is proportional to what the test changed, rather than the size of the plot.
+ * As positions are relative, a snapshot can also be stamped into a different plot, which is used to build copies of a repeated test, or other tests using the same template, without placing the template again.
+ */
+final class PlotSnapshot
+{
+    // Keys for the position of an entity, relative to the plot
+    private static final String RELATIVE_X = "mcjunitlib:x", RELATIVE_Y = "mcjunitlib:y", RELATIVE_Z = "mcjunitlib:z";
+
+    /**
+     * @param template The template which was placed in this plot. The snapshot is only valid for as long as the template is.
+     * @param origin   The minimum corner of the plot
+     * @param size     The size of the plot
+     */
+    static PlotSnapshot capture(ServerWorld world, Template template, BlockPos origin, BlockPos size)
+    {
+        final Map<BlockState, Integer> paletteIds = new IdentityHashMap<>();
+        final List<BlockState> palette = new ArrayList<>();
+        final Int2ObjectMap<CompoundNBT> tileEntities = new Int2ObjectOpenHashMap<>();
+        final int[] ids = new int[size.getX() * size.getY() * size.getZ()];
+        final BlockPos.Mutable cursor = new BlockPos.Mutable();
+
+        int index = 0;
+        for (int y = 0; y < size.getY(); y++)
+        {
+            for (int z = 0; z < size.getZ(); z++)
+            {
+                for (int x = 0; x < size.getX(); x++)
+                {
+                    cursor.setWithOffset(origin, x, y, z);
+                    final BlockState state = world.getBlockState(cursor);
+                    ids[index] = paletteIds.computeIfAbsent(state, key -> {
+                        palette.add(key);
+                        return palette.size() - 1;
+                    });
+                    if (state.hasTileEntity())
+                    {
+                        final TileEntity te = world.getBlockEntity(cursor);
+                        if (te != null)
+                        {
+                            tileEntities.put(index, withoutPosition(te.save(new CompoundNBT())));
+                        }
+                    }
+                    index++;
+                }
+            }
+        }
+
+        final BitArray data = new BitArray(Math.max(1, MathHelper.ceillog2(palette.size())), ids.length);
+        for (int i = 0; i < ids.length; i++)
+        {
+            data.set(i, ids[i]);
+        }
+
+        // Entities placed by the template. Passengers are saved along with the entity they are riding
+        final List<CompoundNBT> entities = new ArrayList<>();
+        for (Entity entity : IntegrationTestHelper.getTestEntities(world, new AxisAlignedBB(origin, origin.offset(size))))
+        {
+            final CompoundNBT nbt = new CompoundNBT();
+            if (!entity.isPassenger() && entity.saveAsPassenger(nbt))
+            {
+                final Vector3d pos = entity.position().subtract(Vector3d.atLowerCornerOf(origin));
+                nbt.putDouble(RELATIVE_X, pos.x);
+                nbt.putDouble(RELATIVE_Y, pos.y);
+                nbt.putDouble(RELATIVE_Z, pos.z);
+                nbt.remove("UUID");
+                entities.add(nbt);
+            }
+        }
+        return new PlotSnapshot(template, size.immutable(), palette.toArray(new BlockState[0]), data, tileEntities, entities);
+    }
+
+    private static CompoundNBT withoutPosition(CompoundNBT nbt)
+    {
+        nbt.remove("x");
+        nbt.remove("y");
+        nbt.remove("z");
+        return nbt;
+    }
+
+    private static CompoundNBT withPosition(CompoundNBT nbt, BlockPos pos)
+    {
+        final CompoundNBT copy = nbt.copy();
+        copy.putInt("x", pos.getX());
+        copy.putInt("y", pos.getY());
+        copy.putInt("z", pos.getZ());
+        return copy;
+    }
+
+    private final Template template;
+    private final BlockPos size;
+    private final BlockState[] palette;
+    private final BitArray data;
+    private final Int2ObjectMap<CompoundNBT> tileEntities;
+    private final List<CompoundNBT> entities;
+
+    private PlotSnapshot(Template template, BlockPos size, BlockState[] palette, BitArray data, Int2ObjectMap<CompoundNBT> tileEntities, List<CompoundNBT> entities)
+    {
+        this.template = template;
+        this.size = size;
+        this.palette = palette;
+        this.data = data;
+        this.tileEntities = tileEntities;
+        this.entities = entities;
+    }
+
+    /**
+     * @return If this snapshot can be used to restore a plot built from the given template. This is false if the template has been reloaded since.
+     */
+    boolean matches(Template template)
+    {
+        return this.template == template;
+    }
+
+    /**
+     * Restores a plot to the state this snapshot was captured in.
+     * Blocks are all placed first, without neighbor updates, and then updated afterwards, in the same manner as {@link Template#placeInWorld}.
+     * Entities are always added again, so any entities left in the plot must be removed first.
+     *
+     * @param origin The minimum corner of the plot to restore
+     * @return The number of positions which were restored
+     */
+    int restore(ServerWorld world, BlockPos origin)
+    {
+        final List<BlockPos> changedPositions = new ArrayList<>();
+        final BlockPos.Mutable cursor = new BlockPos.Mutable();
+
+        int index = 0;
+        for (int y = 0; y < size.getY(); y++)
+        {
+            for (int z = 0; z < size.getZ(); z++)
+            {
+                for (int x = 0; x < size.getX(); x++)
+                {
+                    cursor.setWithOffset(origin, x, y, z);
+                    final BlockState state = palette[data.get(index)];
+                    if (world.getBlockState(cursor) != state)
+                    {
+                        world.setBlock(cursor, state, Constants.BlockFlags.BLOCK_UPDATE);
+                        changedPositions.add(cursor.immutable());
+                    }
+                    index++;
+                }
+            }
+        }
+
+        restoreTileEntities(world, origin, changedPositions);
+
+        for (BlockPos pos : changedPositions)
+        {
+            world.blockUpdated(pos, world.getBlockState(pos).getBlock());
+        }
+
+        restoreEntities(world, origin);
+        return changedPositions.size();
+    }
+
+    /**
+     * Builds a copy of the plot this snapshot was captured from, in a plot which was not built from this snapshot.
+     *
+     * Unlike {@link #restore(ServerWorld, BlockPos)}, this writes block states directly into chunk sections, so no block reacts to being placed or removed: there are no neighbor or shape updates, and {@link BlockState#onPlace} and {@link BlockState#onRemove} are not called.
+     * The snapshot already contains the result of those updates from when the template was first placed, so each copy is identical to it, regardless of the order blocks are written in.
+     * Heightmaps, lighting, points of interest and clients are still updated for each changed position, and tile entities are created and loaded from the snapshot.
+     *
+     * @param origin The minimum corner of the plot to build
+     * @return The number of positions which were changed
+     */
+    int stamp(ServerWorld world, BlockPos origin)
+    {
+        final ServerChunkProvider chunkSource = world.getChunkSource();
+        final List<BlockPos> changedPositions = new ArrayList<>();
+        final BlockPos.Mutable cursor = new BlockPos.Mutable();
+
+        Chunk chunk = null;
+        int index = 0;
+        for (int y = 0; y < size.getY(); y++)
+        {
+            for (int z = 0; z < size.getZ(); z++)
+            {
+                for (int x = 0; x < size.getX(); x++)
+                {
+                    cursor.setWithOffset(origin, x, y, z);
+                    if (chunk == null || chunk.getPos().x != cursor.getX() >> 4 || chunk.getPos().z != cursor.getZ() >> 4)
+                    {
+                        chunk = world.getChunk(cursor.getX() >> 4, cursor.getZ() >> 4);
+                    }
+
+                    final BlockState state = palette[data.get(index)];
+                    final BlockState oldState = chunk.getBlockState(cursor);
+                    if (oldState != state)
+                    {
+                        setBlockInSection(world, chunk, cursor, oldState, state);
+                        chunkSource.getLightEngine().checkBlock(cursor);
+                        chunkSource.blockChanged(cursor);
+                        changedPositions.add(cursor.immutable());
+                    }
+                    index++;
+                }
+            }
+        }
+
+        restoreTileEntities(world, origin, changedPositions);
+        restoreEntities(world, origin);
+        return changedPositions.size();
+    }
+
+    /**
+     * Sets a block state in a chunk section, without any of the side effects of {@link Chunk#setBlockState}, other than those which keep the chunk itself consistent.
+     */
+    private void setBlockInSection(ServerWorld world, Chunk chunk, BlockPos pos, BlockState oldState, BlockState state)
+    {
+        final ChunkSection[] sections = chunk.getSections();
+        final int sectionY = pos.getY() >> 4;
+        ChunkSection section = sections[sectionY];
+        if (section == Chunk.EMPTY_SECTION)
+        {
+            section = new ChunkSection(sectionY << 4);
+            sections[sectionY] = section;
+        }
+
+        final boolean wasEmpty = section.isEmpty();
+        section.setBlockState(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15, state);
+        if (wasEmpty != section.isEmpty())
+        {
+            world.getChunkSource().getLightEngine().updateSectionStatus(pos, section.isEmpty());
+        }
+        for (Map.Entry<Heightmap.Type, Heightmap> entry : chunk.getHeightmaps())
+        {
+            entry.getValue().update(pos.getX() & 15, pos.getY(), pos.getZ() & 15, state);
+        }
+
+        // Tile entities are loaded from the snapshot afterwards
+        if (oldState.hasTileEntity())
+        {
+            world.removeBlockEntity(pos);
+        }
+        if (state.hasTileEntity())
+        {
+            final TileEntity te = state.createTileEntity(world);
+            if (te != null)
+            {
+                world.setBlockEntity(pos, te);
+            }
+        }
+
+        world.onBlockStateChange(pos, oldState, state); // Points of interest
+        chunk.setUnsaved(true);
+    }
+
+    private void restoreTileEntities(ServerWorld world, BlockPos origin, List<BlockPos> changedPositions)
+    {
+        final BlockPos.Mutable cursor = new BlockPos.Mutable();
+        for (Int2ObjectMap.Entry<CompoundNBT> entry : tileEntities.int2ObjectEntrySet())
+        {
+            final int teIndex = entry.getIntKey();
+            cursor.setWithOffset(origin, teIndex % size.getX(), teIndex / (size.getX() * size.getZ()), (teIndex / size.getX()) % size.getZ());
+
+            final TileEntity te = world.getBlockEntity(cursor);
+            if (te != null)
+            {
+                final CompoundNBT expected = withPosition(entry.getValue(), cursor);
+                if (!expected.equals(te.save(new CompoundNBT())))
+                {
+                    te.load(te.getBlockState(), expected);
+                    te.setChanged();
+                    changedPositions.add(cursor.immutable());
+                }
+            }
+        }
+    }
+
+    private void restoreEntities(ServerWorld world, BlockPos origin)
+    {
+        for (CompoundNBT nbt : entities)
+        {
+            final double x = origin.getX() + nbt.getDouble(RELATIVE_X), y = origin.getY() + nbt.getDouble(RELATIVE_Y), z = origin.getZ() + nbt.getDouble(RELATIVE_Z);
+            final Entity entity = EntityType.loadEntityRecursive(nbt, world, e -> e);
+            if (entity != null)
+            {
+                entity.moveTo(x, y, z, entity.yRot, entity.xRot);
+                world.addFreshEntityWithPassengers(entity);
+            }
+        }
+    }
+}
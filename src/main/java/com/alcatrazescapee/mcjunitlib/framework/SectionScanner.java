@@ -0,0 +1,69 @@
+package com.alcatrazescapee.mcjunitlib.framework;
+
+import java.util.function.Predicate;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.MutableBoundingBox;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.server.ServerWorld;
+
+/**
+ * Visits the block states in a region directly from the chunk sections which contain it.
+ * Each section's palette is checked first, so a section which cannot contain any interesting states is skipped without visiting its blocks.
+ */
+final class SectionScanner
+{
+    private static final BlockState AIR = Blocks.AIR.defaultBlockState();
+
+    /**
+     * @param box       The region to scan, in world coordinates (inclusive)
+     * @param candidate A filter for the states the visitor is interested in. Sections whose palette contains no matching states are skipped entirely.
+     * @param visitor   Called for every position in every section which was not skipped, including positions whose state does not match the filter
+     */
+    static void scan(ServerWorld world, MutableBoundingBox box, Predicate<BlockState> candidate, Visitor visitor)
+    {
+        final boolean airIsCandidate = candidate.test(AIR);
+        for (int chunkX = box.x0 >> 4; chunkX <= box.x1 >> 4; chunkX++)
+        {
+            for (int chunkZ = box.z0 >> 4; chunkZ <= box.z1 >> 4; chunkZ++)
+            {
+                final Chunk chunk = world.getChunk(chunkX, chunkZ);
+                final ChunkSection[] sections = chunk.getSections();
+                for (int sectionY = Math.max(0, box.y0 >> 4); sectionY <= Math.min(sections.length - 1, box.y1 >> 4); sectionY++)
+                {
+                    final ChunkSection section = sections[sectionY];
+                    final boolean empty = ChunkSection.isEmpty(section);
+                    if (empty ? !airIsCandidate : !section.maybeHas(candidate))
+                    {
+                        continue; // Nothing in this section can match
+                    }
+
+                    // The intersection of this section and the box
+                    final int minX = Math.max(box.x0, chunkX << 4), maxX = Math.min(box.x1, (chunkX << 4) + 15);
+                    final int minY = Math.max(box.y0, sectionY << 4), maxY = Math.min(box.y1, (sectionY << 4) + 15);
+                    final int minZ = Math.max(box.z0, chunkZ << 4), maxZ = Math.min(box.z1, (chunkZ << 4) + 15);
+                    for (int y = minY; y <= maxY; y++)
+                    {
+                        for (int z = minZ; z <= maxZ; z++)
+                        {
+                            for (int x = minX; x <= maxX; x++)
+                            {
+                                visitor.visit(x, y, z, empty ? AIR : section.getBlockState(x & 15, y & 15, z & 15));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Visitor
+    {
+        void visit(int x, int y, int z, BlockState state);
+    }
+
+    private SectionScanner() {}
+}
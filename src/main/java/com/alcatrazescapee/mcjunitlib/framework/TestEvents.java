@@ -0,0 +1,104 @@
+package com.alcatrazescapee.mcjunitlib.framework;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Flight Recorder events for the test lifecycle, so samples in a recording can be attributed to the test, and part of the test, which was executing.
+ * Each event is a span: it is created when the work begins, and committed when it ends.
+ *
+ * If Flight Recorder is not available on this JVM, or an event is not enabled in the current recording, a shared span which does nothing is returned.
+ */
+public final class TestEvents
+{
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final boolean AVAILABLE = isAvailable();
+
+    /**
+     * A phase of starting the test server.
+     */
+    public static Span startupPhase(String phase)
+    {
+        return AVAILABLE ? JfrTestEvents.startupPhase(phase) : Span.NONE;
+    }
+
+    /**
+     * A single unit test. The span should be given the result of the test before it is committed.
+     */
+    public static Span unitTest(String test)
+    {
+        return AVAILABLE ? JfrTestEvents.unitTest(test) : Span.NONE;
+    }
+
+    /**
+     * Building the plot for an integration test.
+     */
+    static Span integrationTestSetup(IntegrationTestHelper helper)
+    {
+        return AVAILABLE ? JfrTestEvents.integrationTestSetup(helper) : Span.NONE;
+    }
+
+    /**
+     * An integration test, from when it is started until it has a result. The span should be given the result of the test before it is committed.
+     */
+    static Span integrationTest(IntegrationTestHelper helper)
+    {
+        return AVAILABLE ? JfrTestEvents.integrationTest(helper) : Span.NONE;
+    }
+
+    /**
+     * Running an integration test's method, which sets up its actions and assertions.
+     */
+    static Span integrationTestMethod(IntegrationTestHelper helper)
+    {
+        return AVAILABLE ? JfrTestEvents.integrationTestMethod(helper) : Span.NONE;
+    }
+
+    /**
+     * Running a scheduled action of an integration test.
+     */
+    static Span integrationTestAction(IntegrationTestHelper helper, int tick)
+    {
+        return AVAILABLE ? JfrTestEvents.integrationTestAction(helper, tick) : Span.NONE;
+    }
+
+    /**
+     * Evaluating all assertions of an integration test.
+     */
+    static Span integrationTestAssertions(IntegrationTestHelper helper)
+    {
+        return AVAILABLE ? JfrTestEvents.integrationTestAssertions(helper) : Span.NONE;
+    }
+
+    private static boolean isAvailable()
+    {
+        try
+        {
+            // Flight Recorder classes are only referenced by JfrTestEvents, which is not loaded unless they are present
+            Class.forName("jdk.jfr.FlightRecorder");
+            return JfrTestEvents.isAvailable();
+        }
+        catch (ClassNotFoundException | LinkageError e)
+        {
+            LOGGER.debug("Flight Recorder is not available, test events are disabled");
+            return false;
+        }
+    }
+
+    private TestEvents() {}
+
+    public interface Span
+    {
+        Span NONE = () -> {};
+
+        /**
+         * Sets the result of a test, for spans which cover a single test.
+         */
+        default void setResult(String result) {}
+
+        /**
+         * Ends the span, and records it.
+         */
+        void commit();
+    }
+}
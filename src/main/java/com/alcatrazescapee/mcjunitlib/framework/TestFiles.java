@@ -0,0 +1,108 @@
+package com.alcatrazescapee.mcjunitlib.framework;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+
+/**
+ * Files written by the test server which persist between runs (reports, and state used to order or select tests).
+ * Unlike the test world, these are not deleted on startup.
+ */
+public final class TestFiles
+{
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+    private static final Path DIRECTORY = Paths.get("mcjunitlib");
+
+    /**
+     * @param name A file name, relative to the test output directory
+     * @return The path to the file
+     */
+    public static Path resolve(String name)
+    {
+        return DIRECTORY.resolve(name);
+    }
+
+    /**
+     * @return The lines of the file, or an empty list if it did not exist or could not be read
+     */
+    public static List<String> readLines(String name)
+    {
+        final Path path = resolve(name);
+        if (Files.isRegularFile(path))
+        {
+            try
+            {
+                return Files.readAllLines(path, StandardCharsets.UTF_8);
+            }
+            catch (IOException e)
+            {
+                LOGGER.warn("Unable to read {} ({})", path, e.getMessage());
+                LOGGER.debug("Error", e);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    public static void writeLines(String name, Collection<String> lines)
+    {
+        final Path path = resolve(name);
+        try
+        {
+            Files.createDirectories(path.getParent());
+            Files.write(path, lines, StandardCharsets.UTF_8);
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Unable to write {} ({})", path, e.getMessage());
+            LOGGER.debug("Error", e);
+        }
+    }
+
+    public static void delete(String name)
+    {
+        final Path path = resolve(name);
+        try
+        {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Unable to delete {} ({})", path, e.getMessage());
+            LOGGER.debug("Error", e);
+        }
+    }
+
+    public static void writeJson(String name, JsonElement json)
+    {
+        final Path path = resolve(name);
+        try
+        {
+            Files.createDirectories(path.getParent());
+            try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8))
+            {
+                GSON.toJson(json, writer);
+            }
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Unable to write {} ({})", path, e.getMessage());
+            LOGGER.debug("Error", e);
+        }
+    }
+
+    private TestFiles() {}
+}
@@ -0,0 +1,62 @@
+package com.alcatrazescapee.mcjunitlib.framework;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.UUID;
+
+import net.minecraft.item.Item;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.common.util.FakePlayer;
+import net.minecraftforge.common.util.FakePlayerFactory;
+
+import com.mojang.authlib.GameProfile;
+
+/**
+ * Simulated players used by integration tests. Each test which uses a player is given its own, so tests running at the same time do not share an inventory, position or item cooldowns.
+ * Players are reset and returned to the pool once a test completes, so only as many are created as there are tests using them at once.
+ */
+final class TestPlayerPool
+{
+    private final Deque<FakePlayer> available;
+    private int created;
+
+    TestPlayerPool()
+    {
+        this.available = new ArrayDeque<>();
+        this.created = 0;
+    }
+
+    FakePlayer acquire(ServerWorld world)
+    {
+        final FakePlayer player = available.pollFirst();
+        if (player != null && player.level == world)
+        {
+            return player;
+        }
+
+        // Fake players are cached by profile, so these are the same players each time the tests are run
+        created++;
+        final String name = "[Test Player " + created + "]";
+        return FakePlayerFactory.get(world, new GameProfile(UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)), name));
+    }
+
+    /**
+     * Resets a player to an empty state and returns it to the pool.
+     *
+     * @param usedItems Items which the player has used. Cooldowns can only be removed per item.
+     */
+    void release(FakePlayer player, Collection<Item> usedItems)
+    {
+        player.inventory.clearContent();
+        player.removeAllEffects();
+        player.setShiftKeyDown(false);
+        player.setHealth(player.getMaxHealth());
+        for (Item item : usedItems)
+        {
+            player.getCooldowns().removeCooldown(item);
+        }
+        available.addLast(player);
+    }
+}
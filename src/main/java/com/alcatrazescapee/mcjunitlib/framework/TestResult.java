@@ -1,28 +1,20 @@
 package com.alcatrazescapee.mcjunitlib.framework;
 
-import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
 class TestResult
 {
-    static Optional<TestResult> success()
-    {
-        return Optional.of(new TestResult(Collections.emptyList(), true));
-    }
-
-    static Optional<TestResult> fail(List<String> errors)
-    {
-        return Optional.of(new TestResult(errors, false));
-    }
-
     private final List<String> errors;
     private final boolean success;
+    private final int ticks;
+    private final long millis;
 
-    TestResult(List<String> errors, boolean success)
+    TestResult(List<String> errors, boolean success, int ticks, long millis)
     {
         this.errors = errors;
         this.success = success;
+        this.ticks = ticks;
+        this.millis = millis;
     }
 
     boolean isSuccess()
@@ -34,4 +26,20 @@ class TestResult
     {
         return errors;
     }
+
+    /**
+     * @return The number of ticks the test ran for, before it passed or failed
+     */
+    int getTicks()
+    {
+        return ticks;
+    }
+
+    /**
+     * @return The wall time, in milliseconds, the test ran for, before it passed or failed
+     */
+    long getMillis()
+    {
+        return millis;
+    }
 }
@@ -0,0 +1,96 @@
+package com.alcatrazescapee.mcjunitlib.framework;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Counts the world updates caused by a test, both in total and the most in a single tick.
+ * Counts for the current tick are accumulated in flat arrays, so counting does not allocate.
+ */
+final class UpdateCounter
+{
+    static final int BLOCK_UPDATES = 0; // A block notifying its neighbors of a change
+    static final int NEIGHBOR_NOTIFICATIONS = 1; // Each neighbor which was notified
+    static final int SCHEDULED_TICKS = 2; // Scheduled block and fluid ticks
+    static final int BLOCK_ENTITY_TICKS = 3;
+
+    private static final String[] NAMES = {"blockUpdates", "neighborNotifications", "scheduledTicks", "blockEntityTicks"};
+
+    private final long[] totals;
+    private final int[] peaks;
+    private final int[] current; // Counts for the current tick
+
+    UpdateCounter()
+    {
+        this.totals = new long[NAMES.length];
+        this.peaks = new int[NAMES.length];
+        this.current = new int[NAMES.length];
+    }
+
+    void add(int type, int count)
+    {
+        current[type] += count;
+    }
+
+    /**
+     * Adds the counts of the current tick to the totals, and starts counting the next tick.
+     */
+    void endTick()
+    {
+        for (int i = 0; i < NAMES.length; i++)
+        {
+            totals[i] += current[i];
+            peaks[i] = Math.max(peaks[i], current[i]);
+            current[i] = 0;
+        }
+    }
+
+    /**
+     * Combines the counts of another copy of the same test. Totals are added, and peaks are the highest of either.
+     */
+    UpdateCounter merge(UpdateCounter other)
+    {
+        for (int i = 0; i < NAMES.length; i++)
+        {
+            totals[i] += other.totals[i];
+            peaks[i] = Math.max(peaks[i], other.peaks[i]);
+        }
+        return this;
+    }
+
+    long getTotal()
+    {
+        long total = 0;
+        for (long count : totals)
+        {
+            total += count;
+        }
+        return total;
+    }
+
+    String summary()
+    {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < NAMES.length; i++)
+        {
+            if (i > 0)
+            {
+                builder.append(", ");
+            }
+            builder.append(NAMES[i]).append(' ').append(totals[i]).append(" (peak ").append(peaks[i]).append("/tick)");
+        }
+        return builder.toString();
+    }
+
+    JsonObject toJson()
+    {
+        final JsonObject json = new JsonObject();
+        for (int i = 0; i < NAMES.length; i++)
+        {
+            final JsonObject countJson = new JsonObject();
+            countJson.addProperty("total", totals[i]);
+            countJson.addProperty("peak", peaks[i]);
+            json.add(NAMES[i], countJson);
+        }
+        return json;
+    }
+}
@@ -2,6 +2,9 @@ package com.alcatrazescapee.mcjunitlib.framework.mod;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import net.minecraft.block.Blocks;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.GameRules;
@@ -9,6 +12,8 @@ import net.minecraft.world.World;
 import net.minecraft.world.server.ServerWorld;
 import net.minecraftforge.event.RegisterCommandsEvent;
 import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.EntityJoinWorldEvent;
+import net.minecraftforge.event.world.BlockEvent;
 import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 
@@ -32,9 +37,16 @@ public final class ForgeEventHandler
     public void onWorldTick(TickEvent.WorldTickEvent event)
     {
         final World world = event.world;
-        if (event.phase == TickEvent.Phase.END && world instanceof ServerWorld && event.world.dimension() == World.OVERWORLD)
+        if (world instanceof ServerWorld && event.world.dimension() == World.OVERWORLD)
         {
-            IntegrationTestManager.INSTANCE.tick((ServerWorld) world);
+            if (event.phase == TickEvent.Phase.START)
+            {
+                IntegrationTestManager.INSTANCE.beforeTick((ServerWorld) world);
+            }
+            else
+            {
+                IntegrationTestManager.INSTANCE.tick((ServerWorld) world);
+            }
         }
     }
 
@@ -43,7 +55,20 @@ public final class ForgeEventHandler
     {
         // Spawn just beneath the test area
         LOGGER.debug("Setting spawn location for integration tests");
-        event.getSettings().setSpawn(new BlockPos(0, 4, -10), 0.0F);
+        final BlockPos spawnPos = new BlockPos(0, 4, -10);
+        event.getSettings().setSpawn(spawnPos, 0.0F);
+        if (IntegrationTestManager.INSTANCE.isVoidWorld())
+        {
+            // Without any terrain, build a small platform to stand on
+            final BlockPos.Mutable mutablePos = new BlockPos.Mutable();
+            for (int x = -2; x <= 2; x++)
+            {
+                for (int z = -2; z <= 2; z++)
+                {
+                    event.getWorld().setBlock(mutablePos.setWithOffset(spawnPos, x, -1, z), Blocks.SMOOTH_STONE.defaultBlockState(), 3);
+                }
+            }
+        }
         event.setCanceled(true);
     }
 
@@ -66,6 +91,35 @@ public final class ForgeEventHandler
             rules.getRule(GameRules.RULE_DOINSOMNIA).set(false, server);
             rules.getRule(GameRules.RULE_DO_PATROL_SPAWNING).set(false, server);
             rules.getRule(GameRules.RULE_DO_TRADER_SPAWNING).set(false, server);
+
+            if (IntegrationTestManager.INSTANCE.isQuietWorld())
+            {
+                // Disable all world simulation which is not caused by tests. Random ticks are enabled again when running tests which require them
+                rules.getRule(GameRules.RULE_RANDOMTICKING).tryDeserialize("0");
+                rules.getRule(GameRules.RULE_DOFIRETICK).set(false, server);
+                rules.getRule(GameRules.RULE_DISABLE_RAIDS).set(true, server);
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public void onNeighborNotify(BlockEvent.NeighborNotifyEvent event)
+    {
+        // Fired for block changes which update neighbors, and for neighbor updates themselves
+        if (event.getWorld() instanceof ServerWorld)
+        {
+            IntegrationTestManager.INSTANCE.onBlockChanged(event.getPos(), event.getState(), event.getNotifiedSides().size());
+        }
+    }
+
+    @SubscribeEvent
+    public void onEntityJoinWorld(EntityJoinWorldEvent event)
+    {
+        // With a quiet world, only entities inside test areas are allowed to exist
+        final Entity entity = event.getEntity();
+        if (IntegrationTestManager.INSTANCE.isQuietWorld() && event.getWorld() instanceof ServerWorld && !(entity instanceof PlayerEntity) && !IntegrationTestManager.INSTANCE.isInTestArea(entity.getX(), entity.getY(), entity.getZ()))
+        {
+            event.setCanceled(true);
         }
     }
 }
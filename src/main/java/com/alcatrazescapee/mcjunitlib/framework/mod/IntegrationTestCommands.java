@@ -24,9 +24,25 @@ final class IntegrationTestCommands
             .then(Commands.literal("run")
                 .executes(context -> runAllTests(context.getSource()))
             )
+            .then(Commands.literal("rerun")
+                .then(Commands.literal("failed")
+                    .executes(context -> rerunFailedTests(context.getSource()))
+                )
+            )
         );
     }
 
+    private static int rerunFailedTests(CommandSource source)
+    {
+        final BiConsumer<String, Boolean> logger = wrap(source);
+        if (IntegrationTestManager.INSTANCE.verifyAllTests(source.getLevel(), logger))
+        {
+            IntegrationTestManager.INSTANCE.setupFailedTests(source.getLevel(), logger);
+            IntegrationTestManager.INSTANCE.runAllTests(source.getLevel(), logger);
+        }
+        return Command.SINGLE_SUCCESS;
+    }
+
     private static int runAllTests(CommandSource source)
     {
         IntegrationTestManager.INSTANCE.runAllTests(source.getLevel(), wrap(source));
@@ -6,6 +6,7 @@
 package com.alcatrazescapee.mcjunitlib.service;
 
 import java.util.concurrent.Callable;
+import java.util.function.Predicate;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -19,6 +20,13 @@ public class FMLTestServerLaunchProvider extends FMLUserdevServerLaunchProvider
 {
     private static final Logger LOGGER = LogManager.getLogger();
 
+    /**
+     * Packages of the bundled JUnit platform, which are loaded by the parent class loader, rather than transformed.
+     * These never reference Minecraft or mod classes, so they have no need for transformation, and test classes are still loaded, through the context class loader, by the transforming class loader.
+     * Set the system property {@code mcjunitlib.transformJUnit} to {@code true} to load them through the transforming class loader instead.
+     */
+    private static final String[] JUNIT_PACKAGES = {"org.junit.", "org.opentest4j.", "org.apiguardian."};
+
     @Override
     public String name()
     {
@@ -32,9 +40,27 @@ public class FMLTestServerLaunchProvider extends FMLUserdevServerLaunchProvider
             LOGGER.debug(CORE, "Launching test server in {} with arguments {}", launchClassLoader, arguments);
             super.beforeStart(launchClassLoader);
             launchClassLoader.addTargetPackageFilter(getPackagePredicate());
+            if (!Boolean.getBoolean("mcjunitlib.transformJUnit"))
+            {
+                launchClassLoader.addTargetPackageFilter(getJUnitPackagePredicate());
+            }
             Thread.currentThread().setContextClassLoader(launchClassLoader.getInstance());
             Class.forName("com.alcatrazescapee.mcjunitlib.TestMain", true, launchClassLoader.getInstance()).getMethod("main", String[].class).invoke(null, (Object)arguments);
             return null;
         };
     }
+
+    private Predicate<String> getJUnitPackagePredicate()
+    {
+        return className -> {
+            for (String junitPackage : JUNIT_PACKAGES)
+            {
+                if (className.startsWith(junitPackage))
+                {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
 }